@@ -0,0 +1,72 @@
+package com.unemployedlistening.analysis;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Correlation math benchmarks on one genre: the one-pass Pearson accumulator
+ * on its year-over-year delta series, and building those deltas from a
+ * GenreSeries as CorrelationAnalyzer does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CorrelationBenchmark {
+
+    // Years of deltas per genre; the real data has about 60
+    @Param({ "60", "1000" })
+    public int points;
+
+    double[] unemploymentDeltas;
+    double[] countDeltas;
+    GenreSeries series;
+    PearsonAccumulator accumulator = new PearsonAccumulator();
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        unemploymentDeltas = new double[points];
+        countDeltas = new double[points];
+        for (int i = 0; i < points; i++) {
+            double delta = random.nextDouble() * 4 - 2;
+            unemploymentDeltas[i] = delta;
+            countDeltas[i] = delta * 30 + random.nextDouble() * 200 - 100;
+        }
+
+        series = new GenreSeries();
+        for (int year = 0; year <= points; year++) {
+            series.put(1948 + year, 1000 + random.nextInt(500), 3 + random.nextDouble() * 7);
+        }
+    }
+
+    @Benchmark
+    public double pearsonCorrelation() {
+        accumulator.reset();
+        for (int i = 0; i < points; i++) {
+            accumulator.add(unemploymentDeltas[i], countDeltas[i]);
+        }
+        return accumulator.correlation() + accumulator.meanX() + accumulator.meanY();
+    }
+
+    @Benchmark
+    public double seriesCorrelation() {
+        accumulator.reset();
+        series.addDeltas(accumulator);
+        return accumulator.correlation();
+    }
+}
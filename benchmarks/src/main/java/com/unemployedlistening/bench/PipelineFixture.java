@@ -0,0 +1,73 @@
+package com.unemployedlistening.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+
+import com.unemployedlistening.util.GenreDictionary;
+
+/**
+ * Synthetic pipeline inputs shared by the task benchmarks: MSD records,
+ * genre annotations for half of the tracks, and the genre, dictionary and
+ * unemployment files tasks load from the distributed cache.
+ */
+public class PipelineFixture {
+
+    public final Configuration conf = new Configuration();
+
+    public final Text[] msdTrackIds;
+    public final IntWritable[] msdYears;
+    public final Text[] genreTrackIds;
+    public final Text[] genreNames;
+
+    public final File genreFile;
+    public final File dictionaryFile;
+    public final File unemploymentFile;
+    public final GenreDictionary dictionary;
+
+    public PipelineFixture(int records, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+
+        msdTrackIds = new Text[records];
+        msdYears = new IntWritable[records];
+        List<String> genreLines = new ArrayList<>();
+        List<Text> annotatedIds = new ArrayList<>();
+        List<Text> annotatedGenres = new ArrayList<>();
+        for (int i = 0; i < records; i++) {
+            String trackId = SyntheticData.trackId(random);
+            msdTrackIds[i] = new Text(trackId);
+            msdYears[i] = new IntWritable(SyntheticData.year(random));
+
+            // Roughly half of the tracks carry one or two genre annotations
+            if (random.nextBoolean()) {
+                int genres = 1 + random.nextInt(2);
+                for (int g = 0; g < genres; g++) {
+                    String genre = SyntheticData.genre(random);
+                    genreLines.add(trackId + "\t" + genre);
+                    annotatedIds.add(new Text(trackId));
+                    annotatedGenres.add(new Text(genre));
+                }
+            }
+        }
+        genreTrackIds = annotatedIds.toArray(new Text[0]);
+        genreNames = annotatedGenres.toArray(new Text[0]);
+
+        genreFile = SyntheticData.tempFile("genres", genreLines);
+        unemploymentFile = SyntheticData.tempFile("unemployment", SyntheticData.unemploymentLines(random));
+
+        dictionary = GenreDictionary.build(localPath(genreFile), conf);
+        dictionaryFile = SyntheticData.tempFile("genre_dictionary", new ArrayList<>());
+        dictionary.write(localPath(dictionaryFile), conf);
+    }
+
+    public static Path localPath(File file) {
+        return new Path(file.getAbsoluteFile().toURI());
+    }
+}
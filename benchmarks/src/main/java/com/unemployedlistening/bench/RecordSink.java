@@ -0,0 +1,37 @@
+package com.unemployedlistening.bench;
+
+/**
+ * Output side of a benchmark task context.
+ * Counts records and keeps the last one written, so benchmarks can return
+ * something derived from the output and the JIT cannot drop the writes.
+ */
+public class RecordSink {
+
+    private long records;
+    private Object lastKey;
+    private Object lastValue;
+
+    void write(Object key, Object value) {
+        records++;
+        lastKey = key;
+        lastValue = value;
+    }
+
+    public long records() {
+        return records;
+    }
+
+    public Object lastKey() {
+        return lastKey;
+    }
+
+    public Object lastValue() {
+        return lastValue;
+    }
+
+    public void reset() {
+        records = 0;
+        lastKey = null;
+        lastValue = null;
+    }
+}
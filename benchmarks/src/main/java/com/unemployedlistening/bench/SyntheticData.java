@@ -0,0 +1,84 @@
+package com.unemployedlistening.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic records in the formats of the real input files, and
+ * helpers for shipping small files to benchmark tasks as cache files.
+ */
+public final class SyntheticData {
+
+    public static final String[] GENRES = {
+            "Blues", "Country", "Electronic", "Folk", "International", "Jazz", "Latin", "New Age",
+            "Pop_Rock", "Rap", "Reggae", "RnB", "Vocal", "Punk", "Metal" };
+
+    private static final char[] BASE36 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+    private SyntheticData() {
+    }
+
+    // Random MSD-style track ID: "TR" followed by 16 characters from [0-9A-Z].
+    public static String trackId(SplittableRandom random) {
+        char[] chars = new char[18];
+        chars[0] = 'T';
+        chars[1] = 'R';
+        for (int i = 2; i < chars.length; i++) {
+            chars[i] = BASE36[random.nextInt(BASE36.length)];
+        }
+        return new String(chars);
+    }
+
+    // Release year, mostly after 1948 like the real data.
+    public static int year(SplittableRandom random) {
+        return 1930 + random.nextInt(82);
+    }
+
+    public static String genre(SplittableRandom random) {
+        return GENRES[random.nextInt(GENRES.length)];
+    }
+
+    // YEAR<SEP>TRACKID<SEP>ARTIST<SEP>SONG
+    public static String msdLine(SplittableRandom random) {
+        return year(random) + "<SEP>" + trackId(random) + "<SEP>Artist " + random.nextInt(10000)
+                + "<SEP>Song title " + random.nextInt(100000);
+    }
+
+    // BLS-style unemployment rows: YEAR,JAN,...,DEC
+    public static List<String> unemploymentLines(SplittableRandom random) {
+        List<String> lines = new ArrayList<>();
+        lines.add("# Year,Jan,Feb,Mar,Apr,May,Jun,Jul,Aug,Sep,Oct,Nov,Dec");
+        for (int year = 1948; year <= 2011; year++) {
+            StringBuilder line = new StringBuilder().append(year);
+            for (int month = 0; month < 12; month++) {
+                line.append(',').append(String.format("%.1f", 3 + random.nextDouble() * 7));
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    // Writes lines to a temporary file that is deleted on exit.
+    public static File tempFile(String prefix, List<String> lines) throws IOException {
+        File file = File.createTempFile(prefix, ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    // Distributed cache URI for a local file, symlinked under linkName like the driver's.
+    public static URI cacheUri(File file, String linkName) {
+        try {
+            return new URI("file", null, file.getAbsolutePath(), null, linkName);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
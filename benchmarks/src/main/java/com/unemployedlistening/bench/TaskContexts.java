@@ -0,0 +1,82 @@
+package com.unemployedlistening.bench;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.MapContext;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.ReduceContext;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.lib.reduce.WrappedReducer;
+
+/**
+ * Mapper and reducer contexts for driving tasks outside a Hadoop job.
+ * The real Mapper.Context and Reducer.Context are built with WrappedMapper and
+ * WrappedReducer around a proxy that implements only what our tasks use:
+ * configuration, cache files, counters and write. Benchmarks call map() and
+ * reduce() directly, so the record iteration methods are never needed.
+ *
+ * Every write goes through the proxy's reflective dispatch; that cost is the
+ * same before and after a change, so compare results between builds rather
+ * than reading them as absolute task throughput.
+ */
+public final class TaskContexts {
+
+    private TaskContexts() {
+    }
+
+    public static <KI, VI, KO, VO> Mapper<KI, VI, KO, VO>.Context mapContext(Configuration conf,
+            URI[] cacheFiles, RecordSink sink) {
+        @SuppressWarnings("unchecked")
+        MapContext<KI, VI, KO, VO> context = (MapContext<KI, VI, KO, VO>) proxy(MapContext.class, conf,
+                cacheFiles, sink);
+        return new WrappedMapper<KI, VI, KO, VO>().getMapContext(context);
+    }
+
+    public static <KI, VI, KO, VO> Reducer<KI, VI, KO, VO>.Context reduceContext(Configuration conf,
+            URI[] cacheFiles, RecordSink sink) {
+        @SuppressWarnings("unchecked")
+        ReduceContext<KI, VI, KO, VO> context = (ReduceContext<KI, VI, KO, VO>) proxy(ReduceContext.class, conf,
+                cacheFiles, sink);
+        return new WrappedReducer<KI, VI, KO, VO>().getReducerContext(context);
+    }
+
+    private static Object proxy(Class<?> type, Configuration conf, URI[] cacheFiles, RecordSink sink) {
+        Counters counters = new Counters();
+        TaskAttemptID attemptId = new TaskAttemptID();
+        InvocationHandler handler = (Object proxy, Method method, Object[] args) -> {
+            switch (method.getName()) {
+                case "write":
+                    sink.write(args[0], args[1]);
+                    return null;
+                case "getConfiguration":
+                    return conf;
+                case "getCacheFiles":
+                    return cacheFiles;
+                case "getCounter":
+                    return args.length == 1 ? counters.findCounter((Enum<?>) args[0])
+                            : counters.findCounter((String) args[0], (String) args[1]);
+                case "getTaskAttemptID":
+                    return attemptId;
+                case "progress":
+                case "setStatus":
+                    return null;
+                case "toString":
+                    return type.getSimpleName() + " for benchmarks";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    throw new UnsupportedOperationException(method.getName() + " is not available in benchmarks");
+            }
+        };
+        return Proxy.newProxyInstance(TaskContexts.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+}
@@ -0,0 +1,110 @@
+package com.unemployedlistening.fused;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.IntWritable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.unemployedlistening.bench.PipelineFixture;
+import com.unemployedlistening.bench.RecordSink;
+import com.unemployedlistening.bench.SyntheticData;
+import com.unemployedlistening.bench.TaskContexts;
+import com.unemployedlistening.io.YearGenreKey;
+import com.unemployedlistening.job1.BroadcastJoinMapper;
+import com.unemployedlistening.util.GenreDictionary;
+import com.unemployedlistening.util.UnemploymentLoader;
+
+/**
+ * Fused pipeline task benchmarks: the join-and-count mapper (per MSD record,
+ * including its cleanup flush) and the unemployment reducer (per key).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FusedBenchmark {
+
+    static final int RECORDS = 10_000;
+    static final int REDUCE_KEYS = 1_000;
+
+    @State(Scope.Thread)
+    public static class MapperState {
+        PipelineFixture fixture;
+        FusedJoinCountMapper mapper;
+        FusedJoinCountMapper.Context context;
+        RecordSink sink = new RecordSink();
+
+        @Setup
+        public void setup() throws Exception {
+            fixture = new PipelineFixture(RECORDS, 42);
+            URI[] cacheFiles = {
+                    SyntheticData.cacheUri(fixture.genreFile, BroadcastJoinMapper.GENRE_CACHE_LINK),
+                    SyntheticData.cacheUri(fixture.dictionaryFile, GenreDictionary.CACHE_LINK) };
+            mapper = new FusedJoinCountMapper();
+            context = TaskContexts.mapContext(fixture.conf, cacheFiles, sink);
+            mapper.setup(context);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ReducerState {
+        YearGenreKey[] keys = new YearGenreKey[REDUCE_KEYS];
+        List<List<IntWritable>> values = new ArrayList<>();
+        FusedUnemploymentReducer reducer;
+        FusedUnemploymentReducer.Context context;
+        RecordSink sink = new RecordSink();
+
+        @Setup
+        public void setup() throws Exception {
+            PipelineFixture fixture = new PipelineFixture(RECORDS, 42);
+            SplittableRandom random = new SplittableRandom(42);
+            for (int i = 0; i < REDUCE_KEYS; i++) {
+                keys[i] = new YearGenreKey(1948 + random.nextInt(64), random.nextInt(fixture.dictionary.size()));
+                values.add(Collections.singletonList(new IntWritable(1 + random.nextInt(5000))));
+            }
+            URI[] cacheFiles = {
+                    SyntheticData.cacheUri(fixture.unemploymentFile, UnemploymentLoader.CACHE_LINK),
+                    SyntheticData.cacheUri(fixture.dictionaryFile, GenreDictionary.CACHE_LINK) };
+            reducer = new FusedUnemploymentReducer();
+            context = TaskContexts.reduceContext(fixture.conf, cacheFiles, sink);
+            reducer.setup(context);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long fusedJoinCountMapper(MapperState state) throws Exception {
+        state.sink.reset();
+        for (int i = 0; i < RECORDS; i++) {
+            state.mapper.map(state.fixture.msdTrackIds[i], state.fixture.msdYears[i], state.context);
+        }
+        state.mapper.cleanup(state.context);
+        return state.sink.records();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REDUCE_KEYS)
+    public long fusedUnemploymentReducer(ReducerState state) throws Exception {
+        state.sink.reset();
+        for (int i = 0; i < REDUCE_KEYS; i++) {
+            state.reducer.reduce(state.keys[i], state.values.get(i), state.context);
+        }
+        return state.sink.records();
+    }
+}
@@ -0,0 +1,189 @@
+package com.unemployedlistening.job1;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.unemployedlistening.bench.PipelineFixture;
+import com.unemployedlistening.bench.RecordSink;
+import com.unemployedlistening.bench.SyntheticData;
+import com.unemployedlistening.bench.TaskContexts;
+import com.unemployedlistening.io.JoinValue;
+import com.unemployedlistening.io.TrackJoinKey;
+import com.unemployedlistening.util.GenreDictionary;
+import com.unemployedlistening.util.TrackIdBloomFilter;
+
+/**
+ * Job 1 task benchmarks: the reduce-side join mappers and reducer, and the
+ * broadcast join mapper. Each invocation pushes RECORDS synthetic records
+ * through map() or reduce(), so scores are per record.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Job1Benchmark {
+
+    static final int RECORDS = 10_000;
+
+    @State(Scope.Thread)
+    public static class MsdMapperState {
+        @Param({ "true", "false" })
+        public boolean bloom;
+
+        PipelineFixture fixture;
+        MsdMapper mapper;
+        MsdMapper.Context context;
+        RecordSink sink = new RecordSink();
+
+        @Setup
+        public void setup() throws Exception {
+            fixture = new PipelineFixture(RECORDS, 42);
+            List<URI> cacheFiles = new ArrayList<>();
+            if (bloom) {
+                TrackIdBloomFilter filter = TrackIdBloomFilter.create(fixture.genreTrackIds.length, 0.01);
+                for (Text trackId : fixture.genreTrackIds) {
+                    filter.add(trackId.getBytes(), 0, trackId.getLength());
+                }
+                File filterFile = File.createTempFile("annotated_tracks", ".bloom");
+                filterFile.deleteOnExit();
+                filter.save(PipelineFixture.localPath(filterFile), fixture.conf);
+                cacheFiles.add(SyntheticData.cacheUri(filterFile, MsdMapper.ANNOTATED_FILTER_LINK));
+            }
+            mapper = new MsdMapper();
+            context = TaskContexts.mapContext(fixture.conf, cacheFiles.toArray(new URI[0]), sink);
+            mapper.setup(context);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class GenreMapperState {
+        PipelineFixture fixture;
+        GenreMapper mapper;
+        GenreMapper.Context context;
+        RecordSink sink = new RecordSink();
+
+        @Setup
+        public void setup() throws Exception {
+            fixture = new PipelineFixture(RECORDS, 42);
+            URI[] cacheFiles = { SyntheticData.cacheUri(fixture.dictionaryFile, GenreDictionary.CACHE_LINK) };
+            mapper = new GenreMapper();
+            context = TaskContexts.mapContext(fixture.conf, cacheFiles, sink);
+            mapper.setup(context);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class JoinReducerState {
+        TrackJoinKey[] keys = new TrackJoinKey[RECORDS];
+        List<List<JoinValue>> values = new ArrayList<>();
+        JoinReducer reducer;
+        JoinReducer.Context context;
+        RecordSink sink = new RecordSink();
+
+        @Setup
+        public void setup() throws IOException {
+            SplittableRandom random = new SplittableRandom(42);
+            for (int i = 0; i < RECORDS; i++) {
+                keys[i] = new TrackJoinKey();
+                keys[i].set(new Text(SyntheticData.trackId(random)), TrackJoinKey.SOURCE_MSD);
+
+                // One year followed by up to two genres, as the secondary sort delivers them
+                List<JoinValue> group = new ArrayList<>();
+                JoinValue year = new JoinValue();
+                year.setYear(SyntheticData.year(random));
+                group.add(year);
+                int genres = random.nextInt(3);
+                for (int g = 0; g < genres; g++) {
+                    JoinValue genre = new JoinValue();
+                    genre.setGenreId(random.nextInt(SyntheticData.GENRES.length));
+                    group.add(genre);
+                }
+                values.add(group);
+            }
+            reducer = new JoinReducer();
+            context = TaskContexts.reduceContext(new Configuration(), new URI[0], sink);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BroadcastState {
+        PipelineFixture fixture;
+        BroadcastJoinMapper mapper;
+        BroadcastJoinMapper.Context context;
+        RecordSink sink = new RecordSink();
+
+        @Setup
+        public void setup() throws Exception {
+            fixture = new PipelineFixture(RECORDS, 42);
+            URI[] cacheFiles = {
+                    SyntheticData.cacheUri(fixture.genreFile, BroadcastJoinMapper.GENRE_CACHE_LINK),
+                    SyntheticData.cacheUri(fixture.dictionaryFile, GenreDictionary.CACHE_LINK) };
+            mapper = new BroadcastJoinMapper();
+            context = TaskContexts.mapContext(fixture.conf, cacheFiles, sink);
+            mapper.setup(context);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long msdMapper(MsdMapperState state) throws Exception {
+        state.sink.reset();
+        for (int i = 0; i < RECORDS; i++) {
+            state.mapper.map(state.fixture.msdTrackIds[i], state.fixture.msdYears[i], state.context);
+        }
+        return state.sink.records();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long genreMapper(GenreMapperState state) throws Exception {
+        state.sink.reset();
+        Text[] trackIds = state.fixture.genreTrackIds;
+        for (int i = 0; i < RECORDS; i++) {
+            int record = i % trackIds.length;
+            state.mapper.map(trackIds[record], state.fixture.genreNames[record], state.context);
+        }
+        return state.sink.records();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long joinReducer(JoinReducerState state) throws Exception {
+        state.sink.reset();
+        for (int i = 0; i < RECORDS; i++) {
+            state.reducer.reduce(state.keys[i], state.values.get(i), state.context);
+        }
+        return state.sink.records();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long broadcastJoinMapper(BroadcastState state) throws Exception {
+        state.sink.reset();
+        for (int i = 0; i < RECORDS; i++) {
+            state.mapper.map(state.fixture.msdTrackIds[i], state.fixture.msdYears[i], state.context);
+        }
+        return state.sink.records();
+    }
+}
@@ -0,0 +1,119 @@
+package com.unemployedlistening.job2;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.unemployedlistening.bench.RecordSink;
+import com.unemployedlistening.bench.SyntheticData;
+import com.unemployedlistening.bench.TaskContexts;
+import com.unemployedlistening.io.YearGenreKey;
+import com.unemployedlistening.util.YearGenreCounts;
+
+/**
+ * Job 2 task benchmarks: the counting mapper, with and without in-mapper
+ * combining, and the summing reducer. Scores are per input record.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Job2Benchmark {
+
+    static final int RECORDS = 10_000;
+
+    @State(Scope.Thread)
+    public static class MapperState {
+        // 0 disables in-mapper combining
+        @Param({ "4096", "0" })
+        public int maxEntries;
+
+        YearGenreKey[] keys = new YearGenreKey[RECORDS];
+        GenreCountMapper mapper;
+        GenreCountMapper.Context context;
+        RecordSink sink = new RecordSink();
+
+        @Setup
+        public void setup() throws Exception {
+            SplittableRandom random = new SplittableRandom(42);
+            for (int i = 0; i < RECORDS; i++) {
+                keys[i] = new YearGenreKey(1948 + random.nextInt(64), random.nextInt(SyntheticData.GENRES.length));
+            }
+            Configuration conf = new Configuration();
+            conf.setInt(YearGenreCounts.MAX_ENTRIES_KEY, maxEntries);
+            mapper = new GenreCountMapper();
+            context = TaskContexts.mapContext(conf, new URI[0], sink);
+            mapper.setup(context);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ReducerState {
+        // Values per key: 1 when mappers combine in memory, larger when they do not
+        @Param({ "1", "100" })
+        public int valuesPerKey;
+
+        YearGenreKey[] keys;
+        List<List<IntWritable>> values = new ArrayList<>();
+        GenreCountReducer reducer;
+        GenreCountReducer.Context context;
+        RecordSink sink = new RecordSink();
+
+        @Setup
+        public void setup() throws Exception {
+            int keyCount = RECORDS / valuesPerKey;
+            keys = new YearGenreKey[keyCount];
+            for (int i = 0; i < keyCount; i++) {
+                keys[i] = new YearGenreKey(1948 + i / SyntheticData.GENRES.length, i % SyntheticData.GENRES.length);
+                List<IntWritable> group = new ArrayList<>();
+                for (int v = 0; v < valuesPerKey; v++) {
+                    group.add(new IntWritable(1));
+                }
+                values.add(group);
+            }
+            reducer = new GenreCountReducer();
+            context = TaskContexts.reduceContext(new Configuration(), new URI[0], sink);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long genreCountMapper(MapperState state) throws Exception {
+        state.sink.reset();
+        for (int i = 0; i < RECORDS; i++) {
+            state.mapper.map(state.keys[i], NullWritable.get(), state.context);
+        }
+        // Totals are emitted at the end of the task
+        state.mapper.cleanup(state.context);
+        return state.sink.records();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long genreCountReducer(ReducerState state) throws Exception {
+        state.sink.reset();
+        for (int i = 0; i < state.keys.length; i++) {
+            state.reducer.reduce(state.keys[i], state.values.get(i), state.context);
+        }
+        return state.sink.records();
+    }
+}
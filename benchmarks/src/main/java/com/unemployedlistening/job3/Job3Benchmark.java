@@ -0,0 +1,106 @@
+package com.unemployedlistening.job3;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.IntWritable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.unemployedlistening.bench.PipelineFixture;
+import com.unemployedlistening.bench.RecordSink;
+import com.unemployedlistening.bench.SyntheticData;
+import com.unemployedlistening.bench.TaskContexts;
+import com.unemployedlistening.io.FinalRecord;
+import com.unemployedlistening.io.YearGenreKey;
+import com.unemployedlistening.util.GenreDictionary;
+import com.unemployedlistening.util.UnemploymentLoader;
+
+/**
+ * Job 3 task benchmark: the unemployment join mapper, including formatting of
+ * the final text records as FinalRecordOutputFormat writes them, against
+ * String.format. Scores are per (year, genre) count.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Job3Benchmark {
+
+    static final int RECORDS = 1_000;
+
+    @State(Scope.Thread)
+    public static class MapperState {
+        YearGenreKey[] keys = new YearGenreKey[RECORDS];
+        IntWritable[] counts = new IntWritable[RECORDS];
+        UnemploymentJoinMapper mapper;
+        UnemploymentJoinMapper.Context context;
+        RecordSink sink = new RecordSink();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GenreDictionary dictionary;
+        double[] rates = new double[RECORDS];
+
+        @Setup
+        public void setup() throws Exception {
+            PipelineFixture fixture = new PipelineFixture(RECORDS, 42);
+            SplittableRandom random = new SplittableRandom(42);
+            for (int i = 0; i < RECORDS; i++) {
+                keys[i] = new YearGenreKey(1948 + random.nextInt(64), random.nextInt(fixture.dictionary.size()));
+                counts[i] = new IntWritable(1 + random.nextInt(5000));
+                rates[i] = 3 + random.nextDouble() * 7;
+            }
+            dictionary = fixture.dictionary;
+            URI[] cacheFiles = {
+                    SyntheticData.cacheUri(fixture.unemploymentFile, UnemploymentLoader.CACHE_LINK),
+                    SyntheticData.cacheUri(fixture.dictionaryFile, GenreDictionary.CACHE_LINK) };
+            mapper = new UnemploymentJoinMapper();
+            context = TaskContexts.mapContext(fixture.conf, cacheFiles, sink);
+            mapper.setup(context);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long unemploymentJoinMapper(MapperState state) throws Exception {
+        state.sink.reset();
+        state.out.reset();
+        for (int i = 0; i < RECORDS; i++) {
+            long written = state.sink.records();
+            state.mapper.map(state.keys[i], state.counts[i], state.context);
+            if (state.sink.records() != written) {
+                ((FinalRecord) state.sink.lastKey()).writeText(state.out);
+                state.out.write('\n');
+            }
+        }
+        return state.out.size();
+    }
+
+    // Baseline: the String.format rendering FinalRecord replaced.
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long formatterBaseline(MapperState state) throws Exception {
+        state.out.reset();
+        for (int i = 0; i < RECORDS; i++) {
+            YearGenreKey key = state.keys[i];
+            String line = String.format(Locale.ROOT, "%d\t%s\t%d\t%.2f", key.getYear(),
+                    state.dictionary.name(key.getGenreId()), state.counts[i].get(), state.rates[i]);
+            state.out.write(line.getBytes(StandardCharsets.UTF_8));
+            state.out.write('\n');
+        }
+        return state.out.size();
+    }
+}
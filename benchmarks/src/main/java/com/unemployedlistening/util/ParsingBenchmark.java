@@ -0,0 +1,103 @@
+package com.unemployedlistening.util;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.unemployedlistening.bench.PipelineFixture;
+import com.unemployedlistening.bench.SyntheticData;
+
+/**
+ * Line parsing benchmarks: FieldTokenizer on MSD lines against the
+ * String.split baseline it replaced, and loading the unemployment file as
+ * text and as the binary table Job 3 tasks read.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParsingBenchmark {
+
+    static final int LINES = 10_000;
+
+    String[] lines = new String[LINES];
+    byte[][] lineBytes = new byte[LINES][];
+    FieldTokenizer tokenizer = new FieldTokenizer("<SEP>", 2);
+
+    Configuration conf = new Configuration();
+    Path unemploymentPath;
+    Path unemploymentTablePath;
+
+    @Setup
+    public void setup() throws Exception {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < LINES; i++) {
+            lines[i] = SyntheticData.msdLine(random);
+            lineBytes[i] = lines[i].getBytes(StandardCharsets.UTF_8);
+        }
+        File unemploymentFile = SyntheticData.tempFile("unemployment", SyntheticData.unemploymentLines(random));
+        unemploymentPath = PipelineFixture.localPath(unemploymentFile);
+        File tableFile = File.createTempFile("unemployment", ".bin");
+        tableFile.deleteOnExit();
+        unemploymentTablePath = PipelineFixture.localPath(tableFile);
+        UnemploymentTable.load(unemploymentPath, conf).write(unemploymentTablePath, conf);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public long fieldTokenizerMsdLine() {
+        long checksum = 0;
+        for (byte[] line : lineBytes) {
+            if (tokenizer.tokenize(line, 0, line.length) >= 2) {
+                checksum += tokenizer.parseInt(0) + tokenizer.length(1);
+            }
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public long stringSplitMsdLine() {
+        long checksum = 0;
+        for (String line : lines) {
+            String[] parts = line.trim().split("<SEP>");
+            if (parts.length >= 2) {
+                checksum += Integer.parseInt(parts[0].trim()) + parts[1].trim().length();
+            }
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public Map<Integer, Double> loadUnemploymentData() throws Exception {
+        return UnemploymentLoader.loadUnemploymentData(unemploymentPath, conf);
+    }
+
+    @Benchmark
+    public UnemploymentTable loadUnemploymentTableText() throws Exception {
+        return UnemploymentTable.load(unemploymentPath, conf);
+    }
+
+    @Benchmark
+    public UnemploymentTable loadUnemploymentTableBinary() throws Exception {
+        return UnemploymentTable.load(unemploymentTablePath, conf);
+    }
+}
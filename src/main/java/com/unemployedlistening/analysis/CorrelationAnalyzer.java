@@ -1,19 +1,19 @@
 package com.unemployedlistening.analysis;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.util.Tool;
@@ -25,23 +25,34 @@ import org.apache.hadoop.util.ToolRunner;
  * 
  * Input format: year\tgenre\tcount\tunemployment_rate
  * Output: Pearson correlation coefficients for each genre
+ *
+ * Records are streamed into one GenreSeries per genre, so memory grows with
+ * genres x years rather than with the number of records. Part files are read
+ * and genres analyzed on analysis.threads threads.
+ *
+ * With analysis.significance.resamples set, each correlation also gets a
+ * permutation-test p-value and a bootstrap confidence interval (see
+ * SignificanceTest), written as three extra columns. Further outputs are
+ * written to their own files when configured: a LagScan (analysis.lag.output),
+ * a RollingCorrelation series per genre (analysis.rolling.output) and a
+ * CorrelationCube for year-range queries (analysis.cube.output).
+ *
+ * analysis.year.from and analysis.year.to (inclusive) restrict the analysis to
+ * a range of years; on year- or decade-partitioned output, partitions outside
+ * the range are not read at all.
  */
 public class CorrelationAnalyzer extends Configured implements Tool {
 
-    // Data structure to hold year-genre-count-unemployment records
-    private static class GenreYearData {
-        int year;
-        String genre;
-        int count;
-        double unemploymentRate;
+    // Header line of the results file
+    public static final String RESULTS_HEADER =
+            "Genre\tPearson_Correlation\tData_Points\tAvg_Unemployment_Delta\tAvg_Count_Delta";
 
-        GenreYearData(int year, String genre, int count, double unemploymentRate) {
-            this.year = year;
-            this.genre = genre;
-            this.count = count;
-            this.unemploymentRate = unemploymentRate;
-        }
-    }
+    // Columns appended to the header when significance testing is enabled
+    public static final String SIGNIFICANCE_HEADER = "\tP_Value\tCI_Low\tCI_High";
+
+    // Inclusive range of years to analyze; unbounded by default
+    public static final String YEAR_FROM_KEY = "analysis.year.from";
+    public static final String YEAR_TO_KEY = "analysis.year.to";
 
     // Result of correlation analysis for a genre
     public static class CorrelationResult {
@@ -50,8 +61,16 @@ public class CorrelationAnalyzer extends Configured implements Tool {
         int dataPoints;
         double avgUnemploymentChange;
         double avgCountChange;
+        // Set by SignificanceTest; NaN if not tested
+        double pValue = Double.NaN;
+        double ciLow = Double.NaN;
+        double ciHigh = Double.NaN;
+
+        // Strongest correlations (by absolute value) first
+        public static final Comparator<CorrelationResult> BY_STRENGTH =
+                (a, b) -> Double.compare(Math.abs(b.pearsonCorrelation), Math.abs(a.pearsonCorrelation));
 
-        CorrelationResult(String genre, double pearsonCorrelation, int dataPoints,
+        public CorrelationResult(String genre, double pearsonCorrelation, int dataPoints,
                 double avgUnemploymentChange, double avgCountChange) {
             this.genre = genre;
             this.pearsonCorrelation = pearsonCorrelation;
@@ -59,6 +78,22 @@ public class CorrelationAnalyzer extends Configured implements Tool {
             this.avgUnemploymentChange = avgUnemploymentChange;
             this.avgCountChange = avgCountChange;
         }
+
+        void setSignificance(double pValue, double ciLow, double ciHigh) {
+            this.pValue = pValue;
+            this.ciLow = ciLow;
+            this.ciHigh = ciHigh;
+        }
+
+        // One line of the results file, without terminator
+        public String format() {
+            String line = String.format("%s\t%.4f\t%d\t%.4f\t%.2f",
+                    genre, pearsonCorrelation, dataPoints, avgUnemploymentChange, avgCountChange);
+            if (Double.isNaN(pValue)) {
+                return line;
+            }
+            return line + String.format("\t%.4f\t%.4f\t%.4f", pValue, ciLow, ciHigh);
+        }
     }
 
     @Override
@@ -68,6 +103,15 @@ public class CorrelationAnalyzer extends Configured implements Tool {
             System.err.println(
                     "  input_dir: Directory containing MapReduce output (year\\tgenre\\tcount\\tunemployment_rate)");
             System.err.println("  output_file: Output file for correlation analysis results");
+            System.err.println("  -D " + YEAR_FROM_KEY + "=YYYY -D " + YEAR_TO_KEY
+                    + "=YYYY: Only analyze years in this range");
+            System.err.println("  -D " + SignificanceTest.RESAMPLES_KEY
+                    + "=N: Add permutation p-values and bootstrap intervals from N resamples");
+            System.err.println("  -D " + LagScan.OUTPUT_KEY + "=FILE [-D " + LagScan.MIN_LAG_KEY + "=-5 -D "
+                    + LagScan.MAX_LAG_KEY + "=5]: Write lagged correlations to FILE");
+            System.err.println("  -D " + RollingCorrelation.OUTPUT_KEY + "=FILE [-D " + RollingCorrelation.WINDOW_KEY
+                    + "=10]: Write rolling-window correlations to FILE");
+            System.err.println("  -D " + CorrelationCube.OUTPUT_KEY + "=FILE: Write a cube for CorrelationCubeQuery to FILE");
             return 1;
         }
 
@@ -77,20 +121,55 @@ public class CorrelationAnalyzer extends Configured implements Tool {
         Configuration conf = getConf();
         FileSystem fs = FileSystem.get(conf);
 
-        // Load all data from input directory
-        System.out.println("Loading data from: " + inputDir);
-        List<GenreYearData> allData = loadData(fs, new Path(inputDir));
-        System.out.println("Loaded " + allData.size() + " records.");
+        int fromYear = conf.getInt(YEAR_FROM_KEY, Integer.MIN_VALUE);
+        int toYear = conf.getInt(YEAR_TO_KEY, Integer.MAX_VALUE);
+
+        SignificanceTest significance = SignificanceTest.fromConf(conf);
+        LagScan lagScan = LagScan.fromConf(conf);
+        RollingCorrelation rolling = RollingCorrelation.fromConf(conf);
+
+        int threads = PartFiles.threads(conf);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<CorrelationResult> results;
+        try {
+            // Load all data from input directory, organized by genre with years in sorted order
+            System.out.println("Loading data from: " + inputDir);
+            Map<String, GenreSeries> dataByGenre = loadData(fs, new Path(inputDir), fromYear, toYear, pool, threads);
+            System.out.println("Found " + dataByGenre.size() + " unique genres.");
+
+            // Calculate correlations for each genre
+            results = calculateCorrelations(dataByGenre, pool, threads);
+
+            // Test significance of each correlation if requested
+            if (significance != null) {
+                System.out.println("Testing significance of " + results.size() + " correlations...");
+                significance.apply(results, dataByGenre, threads);
+            }
 
-        // Organize data by genre
-        Map<String, TreeMap<Integer, GenreYearData>> dataByGenre = organizeByGenre(allData);
-        System.out.println("Found " + dataByGenre.size() + " unique genres.");
+            // Scan lagged correlations if requested
+            if (lagScan != null) {
+                System.out.println("Scanning lagged correlations...");
+                lagScan.run(fs, dataByGenre, pool, threads);
+            }
 
-        // Calculate correlations for each genre
-        List<CorrelationResult> results = calculateCorrelations(dataByGenre);
+            // Compute rolling-window correlations if requested
+            if (rolling != null) {
+                System.out.println("Computing rolling-window correlations...");
+                rolling.run(fs, dataByGenre, pool, threads);
+            }
+
+            // Write the cumulative sums for year-range queries if requested
+            String cubeOutput = conf.get(CorrelationCube.OUTPUT_KEY);
+            if (cubeOutput != null && !cubeOutput.isEmpty()) {
+                CorrelationCube.write(dataByGenre, new Path(cubeOutput), conf);
+                System.out.println("Correlation cube written to: " + cubeOutput);
+            }
+        } finally {
+            pool.shutdown();
+        }
 
         // Write results
-        writeResults(fs, new Path(outputFile), results);
+        writeResults(fs, new Path(outputFile), results, significance != null);
 
         // Print summary
         printSummary(results);
@@ -98,164 +177,123 @@ public class CorrelationAnalyzer extends Configured implements Tool {
         return 0;
     }
 
-    // Load data from all part files in the input directory
-    private List<GenreYearData> loadData(FileSystem fs, Path inputDir) throws IOException {
-        List<GenreYearData> data = new ArrayList<>();
-
-        FileStatus[] files = fs.listStatus(inputDir);
-        for (FileStatus file : files) {
-            if (file.isFile() && file.getPath().getName().startsWith("part-")) {
-                try (BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(fs.open(file.getPath())))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        line = line.trim();
-                        if (line.isEmpty())
-                            continue;
-
-                        String[] parts = line.split("\t");
-                        if (parts.length < 4)
-                            continue;
-
-                        try {
-                            int year = Integer.parseInt(parts[0].trim());
-                            String genre = parts[1].trim();
-                            int count = Integer.parseInt(parts[2].trim());
-                            double unemploymentRate = Double.parseDouble(parts[3].trim());
-
-                            data.add(new GenreYearData(year, genre, count, unemploymentRate));
-                        } catch (NumberFormatException e) {
-                            // Skip malformed lines
-                        }
-                    }
+    // Per-genre series and record count parsed by one loader thread
+    private static class PartialData {
+        Map<String, GenreSeries> dataByGenre = new HashMap<>();
+        long records;
+    }
+
+    // Load data from all part files in the input directory into one series per genre,
+    // reading files concurrently and merging the per-thread series afterwards
+    private Map<String, GenreSeries> loadData(FileSystem fs, Path inputDir, int fromYear, int toYear,
+            ExecutorService pool, int threads) throws IOException {
+        List<Path> files = PartFiles.list(fs, inputDir, fromYear, toYear);
+        List<PartialData> partials = PartFiles.read(fs, files, pool, threads, PartialData::new,
+                (partial, line, firstLine) -> parseLine(partial, line, fromYear, toYear));
+
+        // Each (year, genre) is in exactly one part file, so merge order does not matter
+        Map<String, GenreSeries> dataByGenre = new HashMap<>();
+        long records = 0;
+        for (PartialData partial : partials) {
+            for (Map.Entry<String, GenreSeries> entry : partial.dataByGenre.entrySet()) {
+                GenreSeries series = dataByGenre.putIfAbsent(entry.getKey(), entry.getValue());
+                if (series != null) {
+                    series.merge(entry.getValue());
                 }
             }
+            records += partial.records;
         }
 
-        return data;
+        System.out.println("Loaded " + records + " records.");
+        return dataByGenre;
     }
 
-    // Organize data by genre with years in sorted order
-    private Map<String, TreeMap<Integer, GenreYearData>> organizeByGenre(List<GenreYearData> allData) {
-        Map<String, TreeMap<Integer, GenreYearData>> dataByGenre = new HashMap<>();
+    private static void parseLine(PartialData partial, String line, int fromYear, int toYear) {
+        line = line.trim();
+        if (line.isEmpty())
+            return;
 
-        for (GenreYearData record : allData) {
-            dataByGenre.computeIfAbsent(record.genre, k -> new TreeMap<>())
-                    .put(record.year, record);
-        }
+        String[] parts = line.split("\t");
+        if (parts.length < 4)
+            return;
 
-        return dataByGenre;
+        try {
+            int year = Integer.parseInt(parts[0].trim());
+            if (year < fromYear || year > toYear) {
+                return;
+            }
+            String genre = parts[1].trim();
+            int count = Integer.parseInt(parts[2].trim());
+            double unemploymentRate = Double.parseDouble(parts[3].trim());
+
+            partial.dataByGenre.computeIfAbsent(genre, k -> new GenreSeries())
+                    .put(year, count, unemploymentRate);
+            partial.records++;
+        } catch (NumberFormatException e) {
+            // Skip malformed lines
+        }
     }
 
     // Calculate Pearson correlation coefficient for each genre
-    // between year-over-year changes in count and unemployment
-    private List<CorrelationResult> calculateCorrelations(
-            Map<String, TreeMap<Integer, GenreYearData>> dataByGenre) {
+    // between year-over-year changes in count and unemployment, one slice of genres per thread
+    private List<CorrelationResult> calculateCorrelations(Map<String, GenreSeries> dataByGenre,
+            ExecutorService pool, int threads) throws IOException {
+        List<Map.Entry<String, GenreSeries>> entries = new ArrayList<>(dataByGenre.entrySet());
+        int slice = (entries.size() + threads - 1) / threads;
+
+        List<Future<List<CorrelationResult>>> futures = new ArrayList<>();
+        for (int start = 0; start < entries.size(); start += slice) {
+            List<Map.Entry<String, GenreSeries>> sliceEntries =
+                    entries.subList(start, Math.min(start + slice, entries.size()));
+            futures.add(pool.submit(() -> calculateCorrelations(sliceEntries)));
+        }
 
         List<CorrelationResult> results = new ArrayList<>();
-
-        for (Map.Entry<String, TreeMap<Integer, GenreYearData>> entry : dataByGenre.entrySet()) {
-            String genre = entry.getKey();
-            TreeMap<Integer, GenreYearData> yearData = entry.getValue();
-
-            // Need at least 2 years to calculate deltas
-            if (yearData.size() < 2) {
-                continue;
-            }
-
-            // Calculate year-over-year deltas
-            List<Double> unemploymentDeltas = new ArrayList<>();
-            List<Double> countDeltas = new ArrayList<>();
-
-            Integer prevYear = null;
-            for (Map.Entry<Integer, GenreYearData> yearEntry : yearData.entrySet()) {
-                if (prevYear != null) {
-                    GenreYearData prev = yearData.get(prevYear);
-                    GenreYearData curr = yearEntry.getValue();
-
-                    double unemploymentDelta = curr.unemploymentRate - prev.unemploymentRate;
-                    double countDelta = curr.count - prev.count;
-
-                    unemploymentDeltas.add(unemploymentDelta);
-                    countDeltas.add(countDelta);
-                }
-                prevYear = yearEntry.getKey();
-            }
-
-            // Calculate Pearson correlation
-            if (unemploymentDeltas.size() >= 2) {
-                double correlation = calculatePearsonCorrelation(unemploymentDeltas, countDeltas);
-                double avgUnemploymentChange = average(unemploymentDeltas);
-                double avgCountChange = average(countDeltas);
-
-                results.add(new CorrelationResult(genre, correlation, unemploymentDeltas.size(),
-                        avgUnemploymentChange, avgCountChange));
-            }
+        for (Future<List<CorrelationResult>> future : futures) {
+            results.addAll(PartFiles.await(future));
         }
 
         // Sort by absolute correlation (strongest correlations first)
-        results.sort((a, b) -> Double.compare(Math.abs(b.pearsonCorrelation), Math.abs(a.pearsonCorrelation)));
+        results.sort(CorrelationResult.BY_STRENGTH);
 
         return results;
     }
 
-    // Calculate Pearson correlation coefficient between two lists
-    private double calculatePearsonCorrelation(List<Double> x, List<Double> y) {
-        int n = x.size();
-        if (n != y.size() || n == 0) {
-            return 0.0;
-        }
-
-        double sumX = 0, sumY = 0, sumXY = 0, sumX2 = 0, sumY2 = 0;
-
-        for (int i = 0; i < n; i++) {
-            double xi = x.get(i);
-            double yi = y.get(i);
-            sumX += xi;
-            sumY += yi;
-            sumXY += xi * yi;
-            sumX2 += xi * xi;
-            sumY2 += yi * yi;
-        }
-
-        double numerator = n * sumXY - sumX * sumY;
-        double denominator = Math.sqrt((n * sumX2 - sumX * sumX) * (n * sumY2 - sumY * sumY));
+    private static List<CorrelationResult> calculateCorrelations(List<Map.Entry<String, GenreSeries>> entries) {
+        List<CorrelationResult> results = new ArrayList<>();
+        PearsonAccumulator accumulator = new PearsonAccumulator();
 
-        if (denominator == 0) {
-            return 0.0;
-        }
+        for (Map.Entry<String, GenreSeries> entry : entries) {
+            // Need at least 2 years to calculate deltas
+            if (entry.getValue().yearCount() < 2) {
+                continue;
+            }
 
-        return numerator / denominator;
-    }
+            // Year-over-year deltas in one pass, unemployment delta as x and count delta as y
+            accumulator.reset();
+            entry.getValue().addDeltas(accumulator);
 
-    // Calculate average of a list
-    private double average(List<Double> values) {
-        if (values.isEmpty())
-            return 0;
-        double sum = 0;
-        for (double v : values) {
-            sum += v;
+            if (accumulator.count() >= 2) {
+                results.add(new CorrelationResult(entry.getKey(), accumulator.correlation(),
+                        (int) accumulator.count(), accumulator.meanX(), accumulator.meanY()));
+            }
         }
-        return sum / values.size();
+        return results;
     }
 
     // Write correlation results to output file
-    private void writeResults(FileSystem fs, Path outputPath, List<CorrelationResult> results) throws IOException {
+    private void writeResults(FileSystem fs, Path outputPath, List<CorrelationResult> results,
+            boolean significance) throws IOException {
         try (BufferedWriter writer = new BufferedWriter(
                 new OutputStreamWriter(fs.create(outputPath, true)))) {
 
             // Write header
-            writer.write("Genre\tPearson_Correlation\tData_Points\tAvg_Unemployment_Delta\tAvg_Count_Delta");
+            writer.write(significance ? RESULTS_HEADER + SIGNIFICANCE_HEADER : RESULTS_HEADER);
             writer.newLine();
 
             // Write data
             for (CorrelationResult result : results) {
-                writer.write(String.format("%s\t%.4f\t%d\t%.4f\t%.2f",
-                        result.genre,
-                        result.pearsonCorrelation,
-                        result.dataPoints,
-                        result.avgUnemploymentChange,
-                        result.avgCountChange));
+                writer.write(result.format());
                 writer.newLine();
             }
         }
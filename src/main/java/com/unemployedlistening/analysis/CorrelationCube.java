@@ -0,0 +1,319 @@
+package com.unemployedlistening.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Per-genre cumulative sums of the year-over-year deltas CorrelationAnalyzer
+ * correlates, so the correlation of any genre over any range of years takes a
+ * constant number of reads instead of a pass over the records.
+ *
+ * For each genre and each year slot, a row holds the count and the sums of x,
+ * y, xy, x^2 and y^2 over the deltas that end before that year, with x the
+ * unemployment rate delta and y the count delta, both shifted by the genre's
+ * mean delta so the sums do not cancel (Pearson correlation does not change
+ * under a shift). The row also holds the start year of the delta that ends in
+ * the slot's year and the end year of the next delta, so a query can drop the
+ * one delta that may start before the range. Queries give the same result as
+ * running the analyzer with analysis.year.from and analysis.year.to.
+ *
+ * File layout (big-endian): magic, version, first year, year count, genre
+ * count, data offset; per genre its name (modified UTF-8) and its two shifts;
+ * then, from the data offset, genre count x (year count + 1) rows of six
+ * doubles and two ints. The rows are memory-mapped for reading.
+ */
+public class CorrelationCube {
+
+    // File to write the cube to; the analyzer writes one only if this is set
+    public static final String OUTPUT_KEY = "analysis.cube.output";
+
+    // "CUBE"
+    private static final int MAGIC = 0x43554245;
+    private static final int VERSION = 1;
+
+    private static final int ROW_BYTES = 6 * Double.BYTES + 2 * Integer.BYTES;
+
+    // Row fields, as byte offsets within a row
+    private static final int N = 0;
+    private static final int SUM_X = 8;
+    private static final int SUM_Y = 16;
+    private static final int SUM_XY = 24;
+    private static final int SUM_XX = 32;
+    private static final int SUM_YY = 40;
+    private static final int FROM_YEAR = 48;
+    private static final int NEXT_TO_YEAR = 52;
+
+    // Marks the absence of a delta in FROM_YEAR and NEXT_TO_YEAR
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final int firstYear;
+    private final int years;
+    private final String[] genres;
+    private final Map<String, Integer> genreIndex;
+    private final double[] shiftX;
+    private final double[] shiftY;
+    private final ByteBuffer rows;
+
+    private CorrelationCube(int firstYear, int years, String[] genres, double[] shiftX, double[] shiftY,
+            ByteBuffer rows) {
+        this.firstYear = firstYear;
+        this.years = years;
+        this.genres = genres;
+        this.shiftX = shiftX;
+        this.shiftY = shiftY;
+        this.rows = rows;
+        this.genreIndex = new HashMap<>();
+        for (int i = 0; i < genres.length; i++) {
+            genreIndex.put(genres[i], i);
+        }
+    }
+
+    /**
+     * Writes the cube of the given series.
+     *
+     * @param path Path to write to; replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Map<String, GenreSeries> dataByGenre, Path path, Configuration conf)
+            throws IOException {
+        List<String> genres = new ArrayList<>(dataByGenre.keySet());
+        Collections.sort(genres);
+
+        // Year span of all deltas, and the buffer size of the longest series
+        int firstYear = Integer.MAX_VALUE;
+        int lastYear = Integer.MIN_VALUE;
+        int maxDeltas = 0;
+        for (GenreSeries series : dataByGenre.values()) {
+            maxDeltas = Math.max(maxDeltas, series.deltaCount());
+        }
+        double[] x = new double[maxDeltas];
+        double[] y = new double[maxDeltas];
+        int[] fromYears = new int[maxDeltas];
+        int[] toYears = new int[maxDeltas];
+        double[] shiftX = new double[genres.size()];
+        double[] shiftY = new double[genres.size()];
+        for (int g = 0; g < genres.size(); g++) {
+            int n = dataByGenre.get(genres.get(g)).deltas(x, y, fromYears, toYears);
+            if (n > 0) {
+                firstYear = Math.min(firstYear, fromYears[0]);
+                lastYear = Math.max(lastYear, toYears[n - 1]);
+            }
+            for (int i = 0; i < n; i++) {
+                shiftX[g] += x[i] / n;
+                shiftY[g] += y[i] / n;
+            }
+        }
+        if (firstYear > lastYear) {
+            firstYear = lastYear = 0;
+        }
+        int years = lastYear - firstYear + 1;
+
+        // Header and genre table, padded so the rows start 8-byte aligned
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        for (int g = 0; g < genres.size(); g++) {
+            header.writeUTF(genres.get(g));
+            header.writeDouble(shiftX[g]);
+            header.writeDouble(shiftY[g]);
+        }
+        long dataOffset = 5 * Integer.BYTES + Long.BYTES + headerBytes.size();
+        dataOffset = (dataOffset + 7) & ~7L;
+
+        FileSystem fs = path.getFileSystem(conf);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fs.create(path, true)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(firstYear);
+            out.writeInt(years);
+            out.writeInt(genres.size());
+            out.writeLong(dataOffset);
+            headerBytes.writeTo(out);
+            while (out.size() < dataOffset) {
+                out.writeByte(0);
+            }
+
+            int[] slotFromYear = new int[years + 1];
+            int[] nextToYear = new int[years + 1];
+            for (int g = 0; g < genres.size(); g++) {
+                int n = dataByGenre.get(genres.get(g)).deltas(x, y, fromYears, toYears);
+                writeRows(out, x, y, fromYears, toYears, n, shiftX[g], shiftY[g], firstYear, years,
+                        slotFromYear, nextToYear);
+            }
+        }
+    }
+
+    // Write the years + 1 cumulative rows of one genre
+    private static void writeRows(DataOutputStream out, double[] x, double[] y, int[] fromYears, int[] toYears,
+            int n, double shiftX, double shiftY, int firstYear, int years, int[] slotFromYear, int[] nextToYear)
+            throws IOException {
+        Arrays.fill(slotFromYear, NONE);
+        for (int i = 0; i < n; i++) {
+            slotFromYear[toYears[i] - firstYear] = fromYears[i];
+        }
+        int next = NONE;
+        for (int slot = years; slot >= 0; slot--) {
+            if (slotFromYear[slot] != NONE) {
+                next = firstYear + slot;
+            }
+            nextToYear[slot] = next;
+        }
+
+        double sumX = 0;
+        double sumY = 0;
+        double sumXY = 0;
+        double sumXX = 0;
+        double sumYY = 0;
+        int count = 0;
+        int delta = 0;
+        for (int slot = 0; slot <= years; slot++) {
+            // Cumulative over the deltas ending before this slot's year
+            out.writeDouble(count);
+            out.writeDouble(sumX);
+            out.writeDouble(sumY);
+            out.writeDouble(sumXY);
+            out.writeDouble(sumXX);
+            out.writeDouble(sumYY);
+            out.writeInt(slotFromYear[slot]);
+            out.writeInt(nextToYear[slot]);
+
+            if (delta < n && toYears[delta] == firstYear + slot) {
+                double dx = x[delta] - shiftX;
+                double dy = y[delta] - shiftY;
+                sumX += dx;
+                sumY += dy;
+                sumXY += dx * dy;
+                sumXX += dx * dx;
+                sumYY += dy * dy;
+                count++;
+                delta++;
+            }
+        }
+    }
+
+    /**
+     * Opens a cube file, memory-mapping its rows.
+     *
+     * @throws IOException if the file cannot be read or is not a cube
+     */
+    public static CorrelationCube open(File file) throws IOException {
+        int firstYear;
+        int years;
+        String[] genres;
+        double[] shiftX;
+        double[] shiftY;
+        long dataOffset;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a correlation cube: " + file);
+            }
+            firstYear = in.readInt();
+            years = in.readInt();
+            int genreCount = in.readInt();
+            dataOffset = in.readLong();
+            genres = new String[genreCount];
+            shiftX = new double[genreCount];
+            shiftY = new double[genreCount];
+            for (int g = 0; g < genreCount; g++) {
+                genres[g] = in.readUTF();
+                shiftX[g] = in.readDouble();
+                shiftY[g] = in.readDouble();
+            }
+        }
+
+        long dataBytes = (long) genres.length * (years + 1) * ROW_BYTES;
+        if (dataBytes > Integer.MAX_VALUE) {
+            throw new IOException("Correlation cube too large to map: " + file);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < dataOffset + dataBytes) {
+                throw new IOException("Truncated correlation cube: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            ByteBuffer rows = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, dataBytes);
+            return new CorrelationCube(firstYear, years, genres, shiftX, shiftY, rows);
+        }
+    }
+
+    public int genreCount() {
+        return genres.length;
+    }
+
+    public String genre(int index) {
+        return genres[index];
+    }
+
+    // Index of the genre, or -1 if the cube has no such genre.
+    public int indexOf(String genre) {
+        Integer index = genreIndex.get(genre);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Correlation of the genre's deltas between recorded years in
+     * [fromYear, toYear], or null if there are fewer than two.
+     */
+    public CorrelationAnalyzer.CorrelationResult correlation(int genre, int fromYear, int toYear) {
+        // Deltas ending in (fromYear, toYear], as slot indexes, clamped to the cube
+        int lo = (int) Math.max(0, Math.min(years, (long) fromYear + 1 - firstYear));
+        int hi = (int) Math.max(0, Math.min(years, (long) toYear + 1 - firstYear));
+        if (lo >= hi) {
+            return null;
+        }
+
+        int base = genre * (years + 1) * ROW_BYTES;
+        int upper = base + hi * ROW_BYTES;
+        int lower = base + lo * ROW_BYTES;
+        double n = rows.getDouble(upper + N) - rows.getDouble(lower + N);
+        double sumX = rows.getDouble(upper + SUM_X) - rows.getDouble(lower + SUM_X);
+        double sumY = rows.getDouble(upper + SUM_Y) - rows.getDouble(lower + SUM_Y);
+        double sumXY = rows.getDouble(upper + SUM_XY) - rows.getDouble(lower + SUM_XY);
+        double sumXX = rows.getDouble(upper + SUM_XX) - rows.getDouble(lower + SUM_XX);
+        double sumYY = rows.getDouble(upper + SUM_YY) - rows.getDouble(lower + SUM_YY);
+
+        // Only the first delta in range can start before fromYear (across a gap in the series); drop it if so
+        int first = rows.getInt(lower + NEXT_TO_YEAR);
+        if (first != NONE && first - firstYear < hi) {
+            int row = base + (first - firstYear) * ROW_BYTES;
+            if (rows.getInt(row + FROM_YEAR) < fromYear) {
+                int next = row + ROW_BYTES;
+                n -= rows.getDouble(next + N) - rows.getDouble(row + N);
+                sumX -= rows.getDouble(next + SUM_X) - rows.getDouble(row + SUM_X);
+                sumY -= rows.getDouble(next + SUM_Y) - rows.getDouble(row + SUM_Y);
+                sumXY -= rows.getDouble(next + SUM_XY) - rows.getDouble(row + SUM_XY);
+                sumXX -= rows.getDouble(next + SUM_XX) - rows.getDouble(row + SUM_XX);
+                sumYY -= rows.getDouble(next + SUM_YY) - rows.getDouble(row + SUM_YY);
+            }
+        }
+
+        if (n < 2) {
+            return null;
+        }
+        double varianceX = sumXX - sumX * sumX / n;
+        double varianceY = sumYY - sumY * sumY / n;
+        double covariance = sumXY - sumX * sumY / n;
+        double denominator = Math.sqrt(varianceX * varianceY);
+        double correlation = !(varianceX > 0 && varianceY > 0) || denominator == 0 ? 0.0
+                : Math.max(-1.0, Math.min(1.0, covariance / denominator));
+        return new CorrelationAnalyzer.CorrelationResult(genres[genre], correlation, (int) n,
+                sumX / n + shiftX[genre], sumY / n + shiftY[genre]);
+    }
+}
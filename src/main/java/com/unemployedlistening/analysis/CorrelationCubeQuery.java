@@ -0,0 +1,77 @@
+package com.unemployedlistening.analysis;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Answers year-range correlation queries from a CorrelationCube without
+ * reading the pipeline output.
+ *
+ * Input: Local cube file written by CorrelationAnalyzer (analysis.cube.output),
+ * a range of years and optionally the genres to report
+ * Output: The correlation results for the range on stdout, in the format of the
+ * analyzer's results file (so the output can be fed to GenrePredictor)
+ */
+public class CorrelationCubeQuery extends Configured implements Tool {
+
+    @Override
+    public int run(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: CorrelationCubeQuery <cube_file> <from_year> <to_year> [genre ...]");
+            System.err.println("  cube_file: Local cube file written by CorrelationAnalyzer with -D "
+                    + CorrelationCube.OUTPUT_KEY);
+            System.err.println("  from_year, to_year: Inclusive range of years to correlate");
+            System.err.println("  genre: Genres to report (default: all)");
+            return 1;
+        }
+
+        CorrelationCube cube = CorrelationCube.open(new File(args[0]));
+        int fromYear = Integer.parseInt(args[1]);
+        int toYear = Integer.parseInt(args[2]);
+
+        List<CorrelationAnalyzer.CorrelationResult> results = new ArrayList<>();
+        if (args.length > 3) {
+            for (int i = 3; i < args.length; i++) {
+                int genre = cube.indexOf(args[i]);
+                if (genre < 0) {
+                    System.err.println("Unknown genre: " + args[i]);
+                    continue;
+                }
+                addResult(cube, genre, fromYear, toYear, results);
+            }
+        } else {
+            for (int genre = 0; genre < cube.genreCount(); genre++) {
+                addResult(cube, genre, fromYear, toYear, results);
+            }
+        }
+
+        // Sort by absolute correlation (strongest correlations first)
+        results.sort(CorrelationAnalyzer.CorrelationResult.BY_STRENGTH);
+
+        StringBuilder output = new StringBuilder(CorrelationAnalyzer.RESULTS_HEADER).append('\n');
+        for (CorrelationAnalyzer.CorrelationResult result : results) {
+            output.append(result.format()).append('\n');
+        }
+        System.out.print(output);
+        return 0;
+    }
+
+    private static void addResult(CorrelationCube cube, int genre, int fromYear, int toYear,
+            List<CorrelationAnalyzer.CorrelationResult> results) {
+        CorrelationAnalyzer.CorrelationResult result = cube.correlation(genre, fromYear, toYear);
+        if (result != null) {
+            results.add(result);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int exitCode = ToolRunner.run(new Configuration(), new CorrelationCubeQuery(), args);
+        System.exit(exitCode);
+    }
+}
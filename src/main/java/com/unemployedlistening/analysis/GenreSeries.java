@@ -0,0 +1,126 @@
+package com.unemployedlistening.analysis;
+
+/**
+ * One genre's (count, unemployment rate) per year from the final pipeline
+ * output, in primitive arrays indexed by year - firstYear. The arrays grow to
+ * cover the years seen, so memory is proportional to the year span rather
+ * than to the number of records read.
+ */
+public class GenreSeries {
+
+    private int firstYear;
+    private int[] counts = new int[0];
+    private double[] rates = new double[0];
+    private boolean[] present = new boolean[0];
+    private int yearCount;
+
+    // Records a year's values; a later record for the same year replaces an earlier one.
+    public void put(int year, int count, double unemploymentRate) {
+        int index = ensureYear(year);
+        if (!present[index]) {
+            present[index] = true;
+            yearCount++;
+        }
+        counts[index] = count;
+        rates[index] = unemploymentRate;
+    }
+
+    // Records every year of another series, replacing this series' values for years both hold.
+    public void merge(GenreSeries other) {
+        for (int i = 0; i < other.present.length; i++) {
+            if (other.present[i]) {
+                put(other.firstYear + i, other.counts[i], other.rates[i]);
+            }
+        }
+    }
+
+    // Number of distinct years recorded.
+    public int yearCount() {
+        return yearCount;
+    }
+
+    /**
+     * Feeds the year-over-year deltas (unemployment rate delta, count delta)
+     * between consecutive recorded years, in year order, to the accumulator.
+     */
+    public void addDeltas(PearsonAccumulator accumulator) {
+        int previous = -1;
+        for (int i = 0; i < present.length; i++) {
+            if (!present[i]) {
+                continue;
+            }
+            if (previous >= 0) {
+                accumulator.add(rates[i] - rates[previous], (double) counts[i] - counts[previous]);
+            }
+            previous = i;
+        }
+    }
+
+    // Number of year-over-year deltas addDeltas and deltas produce.
+    public int deltaCount() {
+        return Math.max(0, yearCount - 1);
+    }
+
+    /**
+     * Writes the same deltas as addDeltas into x (unemployment rate delta)
+     * and y (count delta), which must hold at least deltaCount() values.
+     *
+     * @return The number of deltas written
+     */
+    public int deltas(double[] x, double[] y) {
+        return deltas(x, y, null, null);
+    }
+
+    /**
+     * Like deltas(x, y), also writing the years each delta is taken between
+     * into fromYears and toYears unless they are null.
+     */
+    public int deltas(double[] x, double[] y, int[] fromYears, int[] toYears) {
+        int n = 0;
+        int previous = -1;
+        for (int i = 0; i < present.length; i++) {
+            if (!present[i]) {
+                continue;
+            }
+            if (previous >= 0) {
+                x[n] = rates[i] - rates[previous];
+                y[n] = (double) counts[i] - counts[previous];
+                if (fromYears != null) {
+                    fromYears[n] = firstYear + previous;
+                    toYears[n] = firstYear + i;
+                }
+                n++;
+            }
+            previous = i;
+        }
+        return n;
+    }
+
+    // Index of the year, growing the arrays at either end if needed.
+    private int ensureYear(int year) {
+        if (present.length == 0) {
+            firstYear = year;
+            resize(0, 1);
+        } else if (year < firstYear) {
+            int shift = Math.max(firstYear - year, present.length / 2 + 1);
+            resize(shift, present.length + shift);
+            firstYear -= shift;
+        } else if (year - firstYear >= present.length) {
+            resize(0, Math.max(year - firstYear + 1, present.length * 2));
+        }
+        return year - firstYear;
+    }
+
+    private void resize(int shift, int length) {
+        int[] newCounts = new int[length];
+        double[] newRates = new double[length];
+        boolean[] newPresent = new boolean[length];
+        System.arraycopy(counts, 0, newCounts, shift, counts.length);
+        System.arraycopy(rates, 0, newRates, shift, rates.length);
+        System.arraycopy(present, 0, newPresent, shift, present.length);
+        counts = newCounts;
+        rates = newRates;
+        present = newPresent;
+    }
+
+}
@@ -0,0 +1,309 @@
+package com.unemployedlistening.analysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Lagged cross-correlation of each genre's year-over-year deltas.
+ * At lag k the unemployment delta ending in year t is paired with the count
+ * delta ending in year t + k (earlier for negative k), so positive lags test
+ * whether genres respond to unemployment after a delay. Deltas are those of
+ * GenreSeries.addDeltas, so lag 0 matches the analyzer's correlation; a delta
+ * whose partner year has no delta is left out of that lag.
+ *
+ * The deltas are centered, laid out by the year they end in and turned into
+ * prefix sums of x, x^2, y and y^2 once per genre, so the marginal sums of a
+ * lag whose overlap has no missing years cost O(1); an overlap with gaps, and
+ * the cross sum of x and the shifted y, take one pass over the overlap per
+ * lag. Genres are scanned in parallel slices, each reusing its buffers.
+ *
+ * Output: Genre\tBest_Lag\tBest_Correlation\tData_Points\tLag_<min>\t...\tLag_<max>
+ * with the strongest best-lag correlations first.
+ */
+public class LagScan {
+
+    // File to write the lag scan to; the scan runs only if this is set
+    public static final String OUTPUT_KEY = "analysis.lag.output";
+
+    // Inclusive range of lags to scan, in years
+    public static final String MIN_LAG_KEY = "analysis.lag.min";
+    public static final String MAX_LAG_KEY = "analysis.lag.max";
+    private static final int DEFAULT_MIN_LAG = -5;
+    private static final int DEFAULT_MAX_LAG = 5;
+
+    private final Path outputPath;
+    private final int minLag;
+    private final int maxLag;
+
+    // Lag correlations of one genre
+    private static class LagResult {
+        final String genre;
+        final double[] correlations;
+        final int bestLag;
+        final double bestCorrelation;
+        final int bestDataPoints;
+
+        LagResult(String genre, double[] correlations, int bestLag, double bestCorrelation, int bestDataPoints) {
+            this.genre = genre;
+            this.correlations = correlations;
+            this.bestLag = bestLag;
+            this.bestCorrelation = bestCorrelation;
+            this.bestDataPoints = bestDataPoints;
+        }
+    }
+
+    private LagScan(Path outputPath, int minLag, int maxLag) {
+        this.outputPath = outputPath;
+        this.minLag = minLag;
+        this.maxLag = maxLag;
+    }
+
+    /**
+     * Reads the scan settings, or returns null if no lag output is configured.
+     *
+     * @throws IllegalArgumentException if the lag range is empty
+     */
+    public static LagScan fromConf(Configuration conf) {
+        String output = conf.get(OUTPUT_KEY);
+        if (output == null || output.isEmpty()) {
+            return null;
+        }
+        int minLag = conf.getInt(MIN_LAG_KEY, DEFAULT_MIN_LAG);
+        int maxLag = conf.getInt(MAX_LAG_KEY, DEFAULT_MAX_LAG);
+        if (minLag > maxLag) {
+            throw new IllegalArgumentException("Empty lag range: " + minLag + " to " + maxLag);
+        }
+        return new LagScan(new Path(output), minLag, maxLag);
+    }
+
+    /**
+     * Scans every genre, one slice of genres per thread, and writes the results.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    public void run(FileSystem fs, Map<String, GenreSeries> dataByGenre, ExecutorService pool, int threads)
+            throws IOException {
+        List<Map.Entry<String, GenreSeries>> entries = new ArrayList<>(dataByGenre.entrySet());
+        int slice = Math.max(1, (entries.size() + threads - 1) / threads);
+
+        List<Future<List<LagResult>>> futures = new ArrayList<>();
+        for (int start = 0; start < entries.size(); start += slice) {
+            List<Map.Entry<String, GenreSeries>> sliceEntries =
+                    entries.subList(start, Math.min(start + slice, entries.size()));
+            futures.add(pool.submit(() -> scan(sliceEntries)));
+        }
+
+        List<LagResult> results = new ArrayList<>();
+        for (Future<List<LagResult>> future : futures) {
+            results.addAll(PartFiles.await(future));
+        }
+
+        // Strongest best-lag correlations first; genre name breaks ties
+        results.sort(Comparator.<LagResult>comparingDouble(r -> -Math.abs(r.bestCorrelation))
+                .thenComparing(r -> r.genre));
+        writeResults(fs, results);
+    }
+
+    private List<LagResult> scan(List<Map.Entry<String, GenreSeries>> entries) {
+        int maxDeltas = 0;
+        for (Map.Entry<String, GenreSeries> entry : entries) {
+            maxDeltas = Math.max(maxDeltas, entry.getValue().deltaCount());
+        }
+
+        // Buffers shared by the genres of this slice; the by-year buffers grow to the widest year span
+        double[] deltaX = new double[maxDeltas];
+        double[] deltaY = new double[maxDeltas];
+        int[] fromYears = new int[maxDeltas];
+        int[] toYears = new int[maxDeltas];
+        YearBuffers buffers = new YearBuffers();
+
+        List<LagResult> results = new ArrayList<>();
+        for (Map.Entry<String, GenreSeries> entry : entries) {
+            int n = entry.getValue().deltas(deltaX, deltaY, fromYears, toYears);
+            if (n < 2) {
+                continue;
+            }
+            int span = toYears[n - 1] - toYears[0] + 1;
+            buffers.layOut(deltaX, deltaY, toYears, n, span);
+
+            double[] correlations = new double[maxLag - minLag + 1];
+            int bestLag = 0;
+            double bestCorrelation = Double.NaN;
+            int bestDataPoints = 0;
+            for (int lag = minLag; lag <= maxLag; lag++) {
+                // Pairs (x[t], y[t + lag]) for year offsets t in [from, to) where both deltas exist
+                int from = Math.max(0, -lag);
+                int to = Math.min(span, span - lag);
+                int pairs = buffers.pairs(lag, from, to);
+                double correlation = pairs >= 2 ? buffers.correlation(lag, from, to, pairs) : Double.NaN;
+                correlations[lag - minLag] = correlation;
+
+                // The earliest lag in the range wins ties
+                if (!Double.isNaN(correlation)
+                        && (Double.isNaN(bestCorrelation) || Math.abs(correlation) > Math.abs(bestCorrelation))) {
+                    bestLag = lag;
+                    bestCorrelation = correlation;
+                    bestDataPoints = pairs;
+                }
+            }
+            if (!Double.isNaN(bestCorrelation)) {
+                results.add(new LagResult(entry.getKey(), correlations, bestLag, bestCorrelation, bestDataPoints));
+            }
+        }
+        return results;
+    }
+
+    // One genre's centered deltas indexed by the year they end in, minus the first such year, with prefix sums.
+    private static class YearBuffers {
+        double[] x = new double[0];
+        double[] y = new double[0];
+        boolean[] present = new boolean[0];
+        // Prefix sums over the year offsets; missing years add nothing
+        double[] sumX = new double[1];
+        double[] sumXX = new double[1];
+        double[] sumY = new double[1];
+        double[] sumYY = new double[1];
+        int[] presentCount = new int[1];
+
+        // Center the n deltas on their means (so the raw sums below do not cancel) and lay them out by year.
+        void layOut(double[] deltaX, double[] deltaY, int[] toYears, int n, int span) {
+            if (x.length < span) {
+                x = new double[span];
+                y = new double[span];
+                present = new boolean[span];
+                sumX = new double[span + 1];
+                sumXX = new double[span + 1];
+                sumY = new double[span + 1];
+                sumYY = new double[span + 1];
+                presentCount = new int[span + 1];
+            }
+            Arrays.fill(x, 0, span, 0.0);
+            Arrays.fill(y, 0, span, 0.0);
+            Arrays.fill(present, 0, span, false);
+
+            double meanX = 0;
+            double meanY = 0;
+            for (int i = 0; i < n; i++) {
+                meanX += deltaX[i];
+                meanY += deltaY[i];
+            }
+            meanX /= n;
+            meanY /= n;
+
+            for (int i = 0; i < n; i++) {
+                int t = toYears[i] - toYears[0];
+                x[t] = deltaX[i] - meanX;
+                y[t] = deltaY[i] - meanY;
+                present[t] = true;
+            }
+            for (int t = 0; t < span; t++) {
+                sumX[t + 1] = sumX[t] + x[t];
+                sumXX[t + 1] = sumXX[t] + x[t] * x[t];
+                sumY[t + 1] = sumY[t] + y[t];
+                sumYY[t + 1] = sumYY[t] + y[t] * y[t];
+                presentCount[t + 1] = presentCount[t] + (present[t] ? 1 : 0);
+            }
+        }
+
+        // Whether every year offset of x[from, to) and y[from + lag, to + lag) has a delta.
+        private boolean gapFree(int lag, int from, int to) {
+            return presentCount[to] - presentCount[from] == to - from
+                    && presentCount[to + lag] - presentCount[from + lag] == to - from;
+        }
+
+        // Number of year offsets t in [from, to) with deltas at both t and t + lag.
+        int pairs(int lag, int from, int to) {
+            if (to <= from) {
+                return 0;
+            }
+            if (gapFree(lag, from, to)) {
+                return to - from;
+            }
+            int pairs = 0;
+            for (int t = from; t < to; t++) {
+                if (present[t] && present[t + lag]) {
+                    pairs++;
+                }
+            }
+            return pairs;
+        }
+
+        // Pearson correlation of the pairs (x[t], y[t + lag]) for t in [from, to), or 0 if either side is constant.
+        double correlation(int lag, int from, int to, int pairs) {
+            double sx;
+            double sxx;
+            double sy;
+            double syy;
+            double sxy = 0;
+            if (gapFree(lag, from, to)) {
+                sx = sumX[to] - sumX[from];
+                sxx = sumXX[to] - sumXX[from];
+                sy = sumY[to + lag] - sumY[from + lag];
+                syy = sumYY[to + lag] - sumYY[from + lag];
+                for (int t = from; t < to; t++) {
+                    sxy += x[t] * y[t + lag];
+                }
+            } else {
+                sx = 0;
+                sxx = 0;
+                sy = 0;
+                syy = 0;
+                for (int t = from; t < to; t++) {
+                    if (present[t] && present[t + lag]) {
+                        double xt = x[t];
+                        double yt = y[t + lag];
+                        sx += xt;
+                        sxx += xt * xt;
+                        sy += yt;
+                        syy += yt * yt;
+                        sxy += xt * yt;
+                    }
+                }
+            }
+
+            double varianceX = sxx - sx * sx / pairs;
+            double varianceY = syy - sy * sy / pairs;
+            double denominator = Math.sqrt(varianceX * varianceY);
+            if (!(varianceX > 0 && varianceY > 0) || denominator == 0) {
+                return 0.0;
+            }
+            return Math.max(-1.0, Math.min(1.0, (sxy - sx * sy / pairs) / denominator));
+        }
+    }
+
+    private void writeResults(FileSystem fs, List<LagResult> results) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(fs.create(outputPath, true), StandardCharsets.UTF_8))) {
+            StringBuilder header = new StringBuilder("Genre\tBest_Lag\tBest_Correlation\tData_Points");
+            for (int lag = minLag; lag <= maxLag; lag++) {
+                header.append("\tLag_").append(lag);
+            }
+            writer.write(header.toString());
+            writer.newLine();
+
+            for (LagResult result : results) {
+                writer.write(String.format("%s\t%d\t%.4f\t%d",
+                        result.genre, result.bestLag, result.bestCorrelation, result.bestDataPoints));
+                for (double correlation : result.correlations) {
+                    writer.write(String.format("\t%.4f", correlation));
+                }
+                writer.newLine();
+            }
+        }
+
+        System.out.println("Lag scan written to: " + outputPath);
+    }
+}
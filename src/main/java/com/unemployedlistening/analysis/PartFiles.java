@@ -0,0 +1,155 @@
+package com.unemployedlistening.analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import com.unemployedlistening.util.FinalPartitions;
+
+/**
+ * Concurrent line reader for the part files of a job output directory, used
+ * by the analysis tools.
+ * Each worker takes the next unread file, so slow (remote) reads overlap, and
+ * parses its lines into a partial aggregate of its own; the caller merges the
+ * partials. Workers never share a partial, so the line handler needs no
+ * locking.
+ */
+public class PartFiles {
+
+    // Files read (and genres analyzed) concurrently; defaults to the number of available processors
+    public static final String THREADS_KEY = "analysis.threads";
+
+    // Receives each line of a part file together with the worker's partial aggregate.
+    public interface LineHandler<T> {
+        /**
+         * @param partial   The calling worker's partial aggregate
+         * @param line      The line, without terminator
+         * @param firstLine Whether this is the first line of its file
+         */
+        void line(T partial, String line, boolean firstLine);
+    }
+
+    // Number of analysis threads configured, at least 1.
+    public static int threads(Configuration conf) {
+        return Math.max(1, conf.getInt(THREADS_KEY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Lists the files to read for a path: the path itself if it is a file,
+     * otherwise its part-* files, including those in year=/decade= partition
+     * directories, in path order.
+     */
+    public static List<Path> list(FileSystem fs, Path path) throws IOException {
+        return list(fs, path, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Like list(fs, path), but skips partition directories whose years all
+     * fall outside [fromYear, toYear]. Files outside partition directories
+     * are always listed, so records still have to be filtered by year.
+     */
+    public static List<Path> list(FileSystem fs, Path path, int fromYear, int toYear) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (fs.getFileStatus(path).isFile()) {
+            files.add(path);
+            return files;
+        }
+        collectParts(fs, path, fromYear, toYear, files);
+        files.sort((a, b) -> a.toString().compareTo(b.toString()));
+        return files;
+    }
+
+    private static void collectParts(FileSystem fs, Path directory, int fromYear, int toYear, List<Path> files)
+            throws IOException {
+        for (FileStatus child : fs.listStatus(directory)) {
+            String name = child.getPath().getName();
+            if (child.isFile()) {
+                if (name.startsWith("part-")) {
+                    files.add(child.getPath());
+                }
+                continue;
+            }
+            // Partition pruning: only descend into partitions that can hold a requested year
+            int[] years = FinalPartitions.partitionYears(name);
+            if (years != null && years[1] >= fromYear && years[0] <= toYear) {
+                collectParts(fs, child.getPath(), fromYear, toYear, files);
+            }
+        }
+    }
+
+    /**
+     * Reads the files on up to {@code workers} threads of the pool.
+     *
+     * @param newPartial Creates the partial aggregate of one worker
+     * @param handler    Parses a line into the worker's partial
+     * @return The partials of the workers that ran, in no particular order
+     * @throws IOException if a file cannot be read
+     */
+    public static <T> List<T> read(FileSystem fs, List<Path> files, ExecutorService pool, int workers,
+            Supplier<T> newPartial, LineHandler<T> handler) throws IOException {
+        AtomicInteger next = new AtomicInteger();
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < Math.min(workers, files.size()); i++) {
+            futures.add(pool.submit(() -> {
+                T partial = newPartial.get();
+                int index;
+                while ((index = next.getAndIncrement()) < files.size()) {
+                    readFile(fs, files.get(index), partial, handler);
+                }
+                return partial;
+            }));
+        }
+
+        List<T> partials = new ArrayList<>();
+        for (Future<T> future : futures) {
+            partials.add(await(future));
+        }
+        return partials;
+    }
+
+    private static <T> void readFile(FileSystem fs, Path file, T partial, LineHandler<T> handler)
+            throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(file), StandardCharsets.UTF_8))) {
+            String line;
+            boolean firstLine = true;
+            while ((line = reader.readLine()) != null) {
+                handler.line(partial, line, firstLine);
+                firstLine = false;
+            }
+        }
+    }
+
+    /**
+     * Waits for a task submitted to an analysis pool, rethrowing its failure.
+     */
+    public static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for analysis task", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
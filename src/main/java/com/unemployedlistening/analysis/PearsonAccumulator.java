@@ -0,0 +1,96 @@
+package com.unemployedlistening.analysis;
+
+/**
+ * One-pass Pearson correlation of paired values.
+ * Keeps running means and centered co-moments (Welford's update) instead of
+ * raw sums of squares, so the result does not lose precision to cancellation
+ * when the values are large relative to their spread. Accumulators built over
+ * separate parts of a series can be merged.
+ */
+public class PearsonAccumulator {
+
+    private long n;
+    private double meanX;
+    private double meanY;
+    // Sums of squared deviations from the running means, and of their products
+    private double m2X;
+    private double m2Y;
+    private double coMoment;
+
+    public void add(double x, double y) {
+        n++;
+        double dx = x - meanX;
+        meanX += dx / n;
+        double dy = y - meanY;
+        meanY += dy / n;
+        m2X += dx * (x - meanX);
+        m2Y += dy * (y - meanY);
+        coMoment += dx * (y - meanY);
+    }
+
+    // Adds every pair the other accumulator has seen.
+    public void merge(PearsonAccumulator other) {
+        if (other.n == 0) {
+            return;
+        }
+        if (n == 0) {
+            n = other.n;
+            meanX = other.meanX;
+            meanY = other.meanY;
+            m2X = other.m2X;
+            m2Y = other.m2Y;
+            coMoment = other.coMoment;
+            return;
+        }
+        long total = n + other.n;
+        double dx = other.meanX - meanX;
+        double dy = other.meanY - meanY;
+        double weight = (double) n * other.n / total;
+        m2X += other.m2X + dx * dx * weight;
+        m2Y += other.m2Y + dy * dy * weight;
+        coMoment += other.coMoment + dx * dy * weight;
+        meanX += dx * other.n / total;
+        meanY += dy * other.n / total;
+        n = total;
+    }
+
+    // Makes this accumulator a copy of the other.
+    public void set(PearsonAccumulator other) {
+        n = other.n;
+        meanX = other.meanX;
+        meanY = other.meanY;
+        m2X = other.m2X;
+        m2Y = other.m2Y;
+        coMoment = other.coMoment;
+    }
+
+    public void reset() {
+        n = 0;
+        meanX = 0;
+        meanY = 0;
+        m2X = 0;
+        m2Y = 0;
+        coMoment = 0;
+    }
+
+    public long count() {
+        return n;
+    }
+
+    public double meanX() {
+        return meanX;
+    }
+
+    public double meanY() {
+        return meanY;
+    }
+
+    // Pearson correlation coefficient, or 0 if either series is constant or empty.
+    public double correlation() {
+        double denominator = Math.sqrt(m2X * m2Y);
+        if (denominator == 0) {
+            return 0.0;
+        }
+        return coMoment / denominator;
+    }
+}
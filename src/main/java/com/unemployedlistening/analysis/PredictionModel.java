@@ -0,0 +1,240 @@
+package com.unemployedlistening.analysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Immutable, presorted form of a correlation file for answering predictions.
+ * The genres that qualify for predictions are split by the sign of their
+ * correlation and sorted by strength once, when the file is loaded, so a
+ * prediction only has to pick which of the two lists is expected to increase.
+ * Each genre's confidence level and protocol row are computed at load time
+ * as well.
+ *
+ * If the file has the significance columns CorrelationAnalyzer writes with
+ * analysis.significance.resamples set, confidence levels come from each
+ * genre's p-value and bootstrap interval instead of fixed thresholds on the
+ * correlation and the number of data points.
+ */
+public class PredictionModel {
+
+    // Genres with fewer data points are not used for predictions
+    private static final int MIN_DATA_POINTS = 5;
+
+    // Genres with weaker correlations (by absolute value) are not used for predictions
+    private static final double MIN_CORRELATION = 0.2;
+
+    // Unemployment changes smaller than this (by absolute value) predict no shift
+    private static final double MIN_CHANGE = 0.1;
+
+    // First column name of the header line CorrelationAnalyzer writes
+    private static final String HEADER_PREFIX = "Genre\t";
+
+    /**
+     * Genres with a correlation of one sign, strongest first, as parallel arrays.
+     */
+    public static class GenreList {
+        private final String[] genres;
+        private final double[] correlations;
+        private final int[] dataPoints;
+        private final String[] confidences;
+        private final String[] rows;
+
+        private GenreList(List<GenreCorrelation> sorted) {
+            int size = sorted.size();
+            genres = new String[size];
+            correlations = new double[size];
+            dataPoints = new int[size];
+            confidences = new String[size];
+            rows = new String[size];
+            for (int i = 0; i < size; i++) {
+                GenreCorrelation gc = sorted.get(i);
+                genres[i] = gc.genre;
+                correlations[i] = gc.correlation;
+                dataPoints[i] = gc.dataPoints;
+                confidences[i] = Double.isNaN(gc.pValue) ? confidenceLevel(gc.correlation, gc.dataPoints)
+                        : confidenceLevel(gc.pValue, gc.ciLow, gc.ciHigh);
+                rows[i] = String.format("%s\t%.4f\t%s", gc.genre, gc.correlation, confidences[i]);
+            }
+        }
+
+        public int size() {
+            return genres.length;
+        }
+
+        public String genre(int i) {
+            return genres[i];
+        }
+
+        public double correlation(int i) {
+            return correlations[i];
+        }
+
+        public int dataPoints(int i) {
+            return dataPoints[i];
+        }
+
+        public String confidence(int i) {
+            return confidences[i];
+        }
+
+        // genre\tcorrelation\tconfidence, as sent by PredictionServer
+        public String row(int i) {
+            return rows[i];
+        }
+    }
+
+    private static class GenreCorrelation {
+        String genre;
+        double correlation;
+        int dataPoints;
+        // NaN if the file has no significance columns
+        double pValue;
+        double ciLow;
+        double ciHigh;
+
+        GenreCorrelation(String genre, double correlation, int dataPoints, double pValue, double ciLow,
+                double ciHigh) {
+            this.genre = genre;
+            this.correlation = correlation;
+            this.dataPoints = dataPoints;
+            this.pValue = pValue;
+            this.ciLow = ciLow;
+            this.ciHigh = ciHigh;
+        }
+    }
+
+    private final GenreList positive;
+    private final GenreList negative;
+
+    private PredictionModel(GenreList positive, GenreList negative) {
+        this.positive = positive;
+        this.negative = negative;
+    }
+
+    /**
+     * Loads a correlation analysis file, or the part files of a directory of
+     * them, reading files concurrently on up to {@code threads} threads of the
+     * pool.
+     *
+     * @throws IOException if a file cannot be read
+     */
+    public static PredictionModel load(FileSystem fs, Path path, ExecutorService pool, int threads)
+            throws IOException {
+        List<List<GenreCorrelation>> partials = PartFiles.read(fs, PartFiles.list(fs, path), pool, threads,
+                ArrayList::new, PredictionModel::parseLine);
+
+        List<GenreCorrelation> positive = new ArrayList<>();
+        List<GenreCorrelation> negative = new ArrayList<>();
+        for (List<GenreCorrelation> partial : partials) {
+            for (GenreCorrelation gc : partial) {
+                if (gc.correlation > 0) {
+                    positive.add(gc);
+                } else {
+                    negative.add(gc);
+                }
+            }
+        }
+
+        // Sort by correlation strength; genre name breaks ties, since files may be read in any order
+        Comparator<GenreCorrelation> byStrength = Comparator.<GenreCorrelation>comparingDouble(
+                g -> -Math.abs(g.correlation)).thenComparing(g -> g.genre);
+        positive.sort(byStrength);
+        negative.sort(byStrength);
+        return new PredictionModel(new GenreList(positive), new GenreList(negative));
+    }
+
+    private static void parseLine(List<GenreCorrelation> correlations, String line, boolean firstLine) {
+        // Skip header
+        if (firstLine && line.startsWith(HEADER_PREFIX)) {
+            return;
+        }
+
+        line = line.trim();
+        if (line.isEmpty())
+            return;
+
+        String[] parts = line.split("\t");
+        if (parts.length < 3)
+            return;
+
+        try {
+            String genre = parts[0].trim();
+            double correlation = Double.parseDouble(parts[1].trim());
+            int dataPoints = Integer.parseInt(parts[2].trim());
+
+            // P_Value, CI_Low and CI_High follow the five standard columns when present
+            double pValue = Double.NaN;
+            double ciLow = Double.NaN;
+            double ciHigh = Double.NaN;
+            if (parts.length >= 8) {
+                pValue = Double.parseDouble(parts[5].trim());
+                ciLow = Double.parseDouble(parts[6].trim());
+                ciHigh = Double.parseDouble(parts[7].trim());
+            }
+
+            // Only include genres with enough data points and a strong enough correlation
+            if (dataPoints >= MIN_DATA_POINTS && Math.abs(correlation) >= MIN_CORRELATION) {
+                correlations.add(new GenreCorrelation(genre, correlation, dataPoints, pValue, ciLow, ciHigh));
+            }
+        } catch (NumberFormatException e) {
+            // Skip malformed lines
+        }
+    }
+
+    // Whether an unemployment change is large enough to predict genre shifts.
+    public static boolean isSignificantChange(double unemploymentChange) {
+        return Math.abs(unemploymentChange) >= MIN_CHANGE;
+    }
+
+    /**
+     * Genres expected to become more prevalent after the given unemployment
+     * change: positively correlated genres when unemployment rises,
+     * negatively correlated ones when it falls.
+     */
+    public GenreList expectedIncrease(double unemploymentChange) {
+        return unemploymentChange > 0 ? positive : negative;
+    }
+
+    // Genres expected to become less prevalent after the given unemployment change.
+    public GenreList expectedDecrease(double unemploymentChange) {
+        return unemploymentChange > 0 ? negative : positive;
+    }
+
+    // Number of genres used for predictions.
+    public int genreCount() {
+        return positive.size() + negative.size();
+    }
+
+    // Determine confidence level based on correlation strength and data points
+    static String confidenceLevel(double correlation, int dataPoints) {
+        double absCorr = Math.abs(correlation);
+
+        if (absCorr > 0.6 && dataPoints >= 20) {
+            return "HIGH";
+        } else if (absCorr > 0.4 && dataPoints >= 10) {
+            return "MEDIUM";
+        } else {
+            return "LOW";
+        }
+    }
+
+    // Determine confidence level from the permutation p-value and whether the bootstrap interval excludes zero
+    static String confidenceLevel(double pValue, double ciLow, double ciHigh) {
+        boolean excludesZero = ciLow > 0 || ciHigh < 0;
+
+        if (excludesZero && pValue < 0.01) {
+            return "HIGH";
+        } else if (excludesZero && pValue < 0.05) {
+            return "MEDIUM";
+        } else {
+            return "LOW";
+        }
+    }
+}
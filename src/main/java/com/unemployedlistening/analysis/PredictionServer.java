@@ -0,0 +1,241 @@
+package com.unemployedlistening.analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Long-running form of GenrePredictor: loads the correlation file once into a
+ * PredictionModel and answers prediction queries over a line protocol, on
+ * stdin or on a loopback TCP port.
+ *
+ * Each request is one line, "prev_unemployment curr_unemployment", answered by
+ * a status line, one line per genre and an empty line:
+ *
+ *   OK\tchange\tINCREASING|DECREASING|STABLE\tincrease_count\tdecrease_count
+ *   UP\tgenre\tcorrelation\tconfidence      (increase_count lines)
+ *   DOWN\tgenre\tcorrelation\tconfidence    (decrease_count lines)
+ *
+ * Malformed requests get "ERR\tmessage". "RELOAD" reloads the correlation file
+ * and "QUIT" ends the session. The file is also checked for changes
+ * periodically; a changed file is loaded in the background and swapped in
+ * atomically, so queries never wait for a reload or see a partial model.
+ */
+public class PredictionServer extends Configured implements Tool {
+
+    // Loopback port to listen on; a negative port reads requests from stdin, 0 picks a free port
+    public static final String PORT_KEY = "predictor.server.port";
+
+    // How often to check the correlation file for changes; 0 disables hot reload
+    public static final String RELOAD_INTERVAL_KEY = "predictor.reload.interval.ms";
+    private static final long DEFAULT_RELOAD_INTERVAL_MS = 5000;
+
+    private Configuration conf;
+    private FileSystem fs;
+    private Path correlationPath;
+
+    // Current model and the signature of the files it was loaded from, replaced together on reload
+    private volatile Snapshot snapshot;
+
+    private static class Snapshot {
+        final PredictionModel model;
+        final String signature;
+
+        Snapshot(PredictionModel model, String signature) {
+            this.model = model;
+            this.signature = signature;
+        }
+    }
+
+    @Override
+    public int run(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: PredictionServer <correlation_file>");
+            System.err.println("  correlation_file: Path to correlation analysis output (file or directory)");
+            System.err.println("  -D " + PORT_KEY + "=N: Listen on loopback port N instead of reading stdin");
+            System.err.println("  -D " + RELOAD_INTERVAL_KEY + "=MS: Check for a changed file every MS ms (0: never)");
+            return 1;
+        }
+
+        conf = getConf();
+        fs = FileSystem.get(conf);
+        correlationPath = new Path(args[0]);
+        reload(true);
+
+        ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "prediction-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = conf.getLong(RELOAD_INTERVAL_KEY, DEFAULT_RELOAD_INTERVAL_MS);
+        if (interval > 0) {
+            reloader.scheduleWithFixedDelay(() -> reloadQuietly(false), interval, interval, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            int port = conf.getInt(PORT_KEY, -1);
+            if (port < 0) {
+                serve(System.in, System.out);
+            } else {
+                listen(port);
+            }
+        } finally {
+            reloader.shutdownNow();
+        }
+        return 0;
+    }
+
+    // Accept connections on the loopback interface until the process is stopped
+    private void listen(int port) throws IOException {
+        ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "prediction-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.err.println("Listening on " + server.getLocalSocketAddress());
+            while (true) {
+                Socket socket = server.accept();
+                connections.submit(() -> {
+                    try (Socket connection = socket) {
+                        connection.setTcpNoDelay(true);
+                        serve(connection.getInputStream(), connection.getOutputStream());
+                    } catch (IOException e) {
+                        System.err.println("Connection failed: " + e.getMessage());
+                    }
+                    return null;
+                });
+            }
+        } finally {
+            connections.shutdownNow();
+        }
+    }
+
+    // Answer requests from one input until it ends or sends QUIT
+    private void serve(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        StringBuilder response = new StringBuilder(4096);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.equalsIgnoreCase("QUIT")) {
+                break;
+            }
+
+            response.setLength(0);
+            respond(line, response);
+            response.append('\n');
+            writer.write(response.toString());
+            writer.flush();
+        }
+        writer.flush();
+    }
+
+    // Append the response to one request line, without the terminating empty line
+    private void respond(String request, StringBuilder response) {
+        if (request.equalsIgnoreCase("RELOAD")) {
+            try {
+                reload(true);
+                response.append("OK\treloaded\t").append(snapshot.model.genreCount()).append('\n');
+            } catch (IOException | RuntimeException e) {
+                response.append("ERR\treload failed: ").append(e.getMessage()).append('\n');
+            }
+            return;
+        }
+
+        String[] parts = request.split("\\s+");
+        double prevUnemployment;
+        double currUnemployment;
+        try {
+            if (parts.length != 2) {
+                throw new NumberFormatException("expected two rates");
+            }
+            prevUnemployment = Double.parseDouble(parts[0]);
+            currUnemployment = Double.parseDouble(parts[1]);
+        } catch (NumberFormatException e) {
+            response.append("ERR\tExpected: prev_unemployment curr_unemployment\n");
+            return;
+        }
+
+        double unemploymentChange = currUnemployment - prevUnemployment;
+        response.append("OK\t").append(String.format("%+.2f", unemploymentChange)).append('\t');
+        if (!PredictionModel.isSignificantChange(unemploymentChange)) {
+            response.append("STABLE\t0\t0\n");
+            return;
+        }
+
+        // One read of the volatile field, so both lists come from the same model
+        PredictionModel model = snapshot.model;
+        PredictionModel.GenreList increase = model.expectedIncrease(unemploymentChange);
+        PredictionModel.GenreList decrease = model.expectedDecrease(unemploymentChange);
+        response.append(unemploymentChange > 0 ? "INCREASING" : "DECREASING").append('\t')
+                .append(increase.size()).append('\t').append(decrease.size()).append('\n');
+        for (int i = 0; i < increase.size(); i++) {
+            response.append("UP\t").append(increase.row(i)).append('\n');
+        }
+        for (int i = 0; i < decrease.size(); i++) {
+            response.append("DOWN\t").append(decrease.row(i)).append('\n');
+        }
+    }
+
+    // Periodic reload: failures keep the current model
+    private void reloadQuietly(boolean force) {
+        try {
+            reload(force);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Reload of " + correlationPath + " failed: " + e.getMessage());
+        }
+    }
+
+    // Load the correlation file if forced or if it changed since the current model was loaded
+    private synchronized void reload(boolean force) throws IOException {
+        String signature = signature();
+        Snapshot current = snapshot;
+        if (!force && current != null && current.signature.equals(signature)) {
+            return;
+        }
+        PredictionModel model = GenrePredictor.loadModel(conf, fs, correlationPath);
+        snapshot = new Snapshot(model, signature);
+        System.err.println("Loaded " + model.genreCount() + " genres from " + correlationPath);
+    }
+
+    // Names, lengths and modification times of the files the model is loaded from
+    private String signature() throws IOException {
+        StringBuilder signature = new StringBuilder();
+        for (Path file : PartFiles.list(fs, correlationPath)) {
+            FileStatus status = fs.getFileStatus(file);
+            signature.append(file).append('\t').append(status.getLen()).append('\t')
+                    .append(status.getModificationTime()).append('\n');
+        }
+        return signature.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int exitCode = ToolRunner.run(new Configuration(), new PredictionServer(), args);
+        System.exit(exitCode);
+    }
+}
@@ -0,0 +1,179 @@
+package com.unemployedlistening.analysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Pearson correlation of each genre's year-over-year deltas over sliding
+ * windows of N years, as a time series per genre.
+ * A window [start, start + N - 1] holds the deltas between recorded years
+ * that both fall inside it, as the analyzer does with analysis.year.from and
+ * analysis.year.to. Deltas are ordered by both of their years, so the window's
+ * deltas are a contiguous run that slides like a queue.
+ *
+ * The queue is kept as two stacks of PearsonAccumulators: deltas entering the
+ * window are added to a back accumulator, and deltas leave from a front stack
+ * of suffix accumulators, rebuilt from the back one whenever it runs empty.
+ * A window's statistics are the front suffix merged with the back, and every
+ * delta is added at most twice, so each genre costs O(years) rather than
+ * O(years x N). Only adds and merges are used, never subtraction, so windows
+ * keep the accuracy of PearsonAccumulator. Genres are computed in parallel
+ * slices, each reusing its buffers.
+ *
+ * Output: Genre\tWindow_Start\tWindow_End\tPearson_Correlation\tData_Points,
+ * by genre and then window, for windows with at least two deltas.
+ */
+public class RollingCorrelation {
+
+    // File to write the rolling correlations to; they are computed only if this is set
+    public static final String OUTPUT_KEY = "analysis.rolling.output";
+
+    // Window length in years
+    public static final String WINDOW_KEY = "analysis.rolling.window";
+    private static final int DEFAULT_WINDOW = 10;
+
+    private final Path outputPath;
+    private final int window;
+
+    private RollingCorrelation(Path outputPath, int window) {
+        this.outputPath = outputPath;
+        this.window = window;
+    }
+
+    /**
+     * Reads the settings, or returns null if no rolling output is configured.
+     *
+     * @throws IllegalArgumentException if the window is shorter than two years
+     */
+    public static RollingCorrelation fromConf(Configuration conf) {
+        String output = conf.get(OUTPUT_KEY);
+        if (output == null || output.isEmpty()) {
+            return null;
+        }
+        int window = conf.getInt(WINDOW_KEY, DEFAULT_WINDOW);
+        if (window < 2) {
+            throw new IllegalArgumentException(WINDOW_KEY + " must be at least 2: " + window);
+        }
+        return new RollingCorrelation(new Path(output), window);
+    }
+
+    /**
+     * Computes every genre's series, one slice of genres per thread, and
+     * writes them.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    public void run(FileSystem fs, Map<String, GenreSeries> dataByGenre, ExecutorService pool, int threads)
+            throws IOException {
+        List<String> genres = new ArrayList<>(dataByGenre.keySet());
+        Collections.sort(genres);
+        int slice = Math.max(1, (genres.size() + threads - 1) / threads);
+
+        List<Future<String>> futures = new ArrayList<>();
+        for (int start = 0; start < genres.size(); start += slice) {
+            List<String> sliceGenres = genres.subList(start, Math.min(start + slice, genres.size()));
+            futures.add(pool.submit(() -> roll(sliceGenres, dataByGenre)));
+        }
+
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(fs.create(outputPath, true), StandardCharsets.UTF_8))) {
+            writer.write("Genre\tWindow_Start\tWindow_End\tPearson_Correlation\tData_Points");
+            writer.newLine();
+            // Slices are in genre order, so rows come out sorted
+            for (Future<String> future : futures) {
+                writer.write(PartFiles.await(future));
+            }
+        }
+
+        System.out.println("Rolling correlations written to: " + outputPath);
+    }
+
+    // Rows of the genres of one slice
+    private String roll(List<String> genres, Map<String, GenreSeries> dataByGenre) {
+        int maxDeltas = 0;
+        for (String genre : genres) {
+            maxDeltas = Math.max(maxDeltas, dataByGenre.get(genre).deltaCount());
+        }
+
+        // Buffers shared by the genres of this slice
+        double[] x = new double[maxDeltas];
+        double[] y = new double[maxDeltas];
+        int[] fromYears = new int[maxDeltas];
+        int[] toYears = new int[maxDeltas];
+        // suffix[i] aggregates front deltas [i, frontEnd)
+        PearsonAccumulator[] suffix = new PearsonAccumulator[maxDeltas];
+        for (int i = 0; i < maxDeltas; i++) {
+            suffix[i] = new PearsonAccumulator();
+        }
+        PearsonAccumulator back = new PearsonAccumulator();
+        PearsonAccumulator windowStats = new PearsonAccumulator();
+
+        StringBuilder rows = new StringBuilder();
+        for (String genre : genres) {
+            int n = dataByGenre.get(genre).deltas(x, y, fromYears, toYears);
+            if (n == 0) {
+                continue;
+            }
+            back.reset();
+
+            // Window deltas are [lo, hi): front [lo, frontEnd), back [frontEnd, hi)
+            int lo = 0;
+            int frontEnd = 0;
+            int hi = 0;
+            int lastStart = toYears[n - 1] - window + 1;
+            for (int start = fromYears[0]; start <= lastStart; start++) {
+                int end = start + window - 1;
+                while (lo < n && fromYears[lo] < start) {
+                    if (lo < hi && lo == frontEnd) {
+                        // Front is empty: move the back deltas onto it
+                        for (int i = hi - 1; i >= lo; i--) {
+                            if (i + 1 < hi) {
+                                suffix[i].set(suffix[i + 1]);
+                            } else {
+                                suffix[i].reset();
+                            }
+                            suffix[i].add(x[i], y[i]);
+                        }
+                        frontEnd = hi;
+                        back.reset();
+                    }
+                    lo++;
+                }
+                if (hi < lo) {
+                    // Deltas that started before the window never enter it
+                    hi = lo;
+                    frontEnd = lo;
+                    back.reset();
+                }
+                while (hi < n && toYears[hi] <= end) {
+                    back.add(x[hi], y[hi]);
+                    hi++;
+                }
+
+                PearsonAccumulator stats = back;
+                if (lo < frontEnd) {
+                    windowStats.set(suffix[lo]);
+                    windowStats.merge(back);
+                    stats = windowStats;
+                }
+                if (stats.count() >= 2) {
+                    rows.append(String.format("%s\t%d\t%d\t%.4f\t%d%n",
+                            genre, start, end, stats.correlation(), stats.count()));
+                }
+            }
+        }
+        return rows.toString();
+    }
+}
@@ -0,0 +1,231 @@
+package com.unemployedlistening.analysis;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Batch form of GenrePredictor: evaluates many unemployment scenarios against
+ * one in-memory PredictionModel and writes one table row per scenario.
+ *
+ * Scenarios come from a file of "prev_unemployment curr_unemployment" lines,
+ * or, without one, from the grid of every (prev, curr) pair of rates between
+ * scenario.grid.from and scenario.grid.to in steps of scenario.grid.step.
+ *
+ * Significance is tested with the same rule as GenrePredictor and
+ * PredictionServer. A prediction depends only on whether the change is
+ * significant and on its sign, so the genre columns of the three possible
+ * outcomes are built once and scenarios are formatted in parallel slices on analysis.threads threads.
+ *
+ * Output: Prev_Unemployment\tCurr_Unemployment\tChange\tDirection\tIncrease_Genres\tDecrease_Genres
+ * with the genre columns comma-separated, strongest correlation first.
+ */
+public class ScenarioEvaluator extends Configured implements Tool {
+
+    // Grid of rates used when no scenario file is given, in percent
+    public static final String GRID_FROM_KEY = "scenario.grid.from";
+    public static final String GRID_TO_KEY = "scenario.grid.to";
+    public static final String GRID_STEP_KEY = "scenario.grid.step";
+    private static final double DEFAULT_GRID_FROM = 3.0;
+    private static final double DEFAULT_GRID_TO = 11.0;
+    private static final double DEFAULT_GRID_STEP = 0.1;
+
+    // Header line of the results file
+    public static final String RESULTS_HEADER =
+            "Prev_Unemployment\tCurr_Unemployment\tChange\tDirection\tIncrease_Genres\tDecrease_Genres";
+
+    // Scenarios formatted per task
+    private static final int SLICE_SCENARIOS = 4096;
+
+    @Override
+    public int run(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: ScenarioEvaluator <correlation_file> <output_file> [scenario_file]");
+            System.err.println("  correlation_file: Path to correlation analysis output (file or directory)");
+            System.err.println("  output_file: Output file for the scenario table");
+            System.err.println("  scenario_file: Lines of \"prev_unemployment curr_unemployment\"; without it, every pair");
+            System.err.println("    of rates from -D " + GRID_FROM_KEY + " to -D " + GRID_TO_KEY + " in steps of -D "
+                    + GRID_STEP_KEY + " (default 3.0, 11.0, 0.1)");
+            return 1;
+        }
+
+        Configuration conf = getConf();
+        FileSystem fs = FileSystem.get(conf);
+
+        double[][] scenarios = args.length > 2 ? readScenarios(fs, new Path(args[2])) : grid(conf);
+        System.out.println("Evaluating " + scenarios[0].length + " scenarios.");
+
+        PredictionModel model = GenrePredictor.loadModel(conf, fs, new Path(args[0]));
+        System.out.println("Loaded " + model.genreCount() + " genres.");
+
+        writeResults(fs, new Path(args[1]), model, scenarios, PartFiles.threads(conf));
+        return 0;
+    }
+
+    // Previous rates, current rates and changes of each line of a scenario file; blank, "#" and malformed lines are skipped
+    private static double[][] readScenarios(FileSystem fs, Path path) throws IOException {
+        double[] prev = new double[1024];
+        double[] curr = new double[1024];
+        int count = 0;
+        int skipped = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(fs.open(path), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                try {
+                    if (parts.length < 2) {
+                        throw new NumberFormatException(line);
+                    }
+                    double p = Double.parseDouble(parts[0]);
+                    double c = Double.parseDouble(parts[1]);
+                    if (count == prev.length) {
+                        prev = Arrays.copyOf(prev, count * 2);
+                        curr = Arrays.copyOf(curr, count * 2);
+                    }
+                    prev[count] = p;
+                    curr[count] = c;
+                    count++;
+                } catch (NumberFormatException e) {
+                    // Skip malformed lines
+                    skipped++;
+                }
+            }
+        }
+        if (skipped > 0) {
+            System.err.println("Skipped " + skipped + " malformed scenario lines.");
+        }
+        double[] change = new double[count];
+        for (int i = 0; i < count; i++) {
+            change[i] = curr[i] - prev[i];
+        }
+        return new double[][] { Arrays.copyOf(prev, count), Arrays.copyOf(curr, count), change };
+    }
+
+    // Every ordered (prev, curr) pair of grid rates, with its change
+    private static double[][] grid(Configuration conf) {
+        double from = conf.getDouble(GRID_FROM_KEY, DEFAULT_GRID_FROM);
+        double to = conf.getDouble(GRID_TO_KEY, DEFAULT_GRID_TO);
+        double step = conf.getDouble(GRID_STEP_KEY, DEFAULT_GRID_STEP);
+        if (!(step > 0) || to < from) {
+            throw new IllegalArgumentException("Invalid scenario grid: " + from + " to " + to + " step " + step);
+        }
+
+        // Rates as from + i * step rather than a running sum, so steps do not accumulate error
+        int rates = (int) Math.floor((to - from) / step + 1e-9) + 1;
+        long pairs = (long) rates * rates;
+        if (pairs > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Scenario grid too large: " + pairs + " scenarios");
+        }
+        double[] prev = new double[(int) pairs];
+        double[] curr = new double[(int) pairs];
+        double[] change = new double[(int) pairs];
+        int n = 0;
+        for (int i = 0; i < rates; i++) {
+            for (int j = 0; j < rates; j++) {
+                prev[n] = from + i * step;
+                curr[n] = from + j * step;
+                // From the indices, so equal steps give equal changes whatever the rates round to
+                change[n] = (j - i) * step;
+                n++;
+            }
+        }
+        return new double[][] { prev, curr, change };
+    }
+
+    // Format slices of scenarios in parallel and write them in scenario order
+    private static void writeResults(FileSystem fs, Path outputPath, PredictionModel model, double[][] scenarios,
+            int threads) throws IOException {
+        // Genre columns of each possible outcome, built once
+        String rising = "INCREASING\t" + genreColumns(model, 1.0);
+        String falling = "DECREASING\t" + genreColumns(model, -1.0);
+        String stable = "STABLE\t\t";
+
+        double[] prev = scenarios[0];
+        double[] curr = scenarios[1];
+        double[] change = scenarios[2];
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(fs.create(outputPath, true), StandardCharsets.UTF_8))) {
+            writer.write(RESULTS_HEADER);
+            writer.newLine();
+
+            // Keep at most a few slices per thread in flight, so the whole table is never held in memory
+            List<Future<String>> pending = new ArrayList<>();
+            for (int start = 0; start < prev.length; start += SLICE_SCENARIOS) {
+                int sliceStart = start;
+                int sliceEnd = Math.min(start + SLICE_SCENARIOS, prev.length);
+                pending.add(pool.submit(() -> formatSlice(prev, curr, change, sliceStart, sliceEnd, rising, falling, stable)));
+                if (pending.size() >= 4 * threads) {
+                    writer.write(PartFiles.await(pending.remove(0)));
+                }
+            }
+            for (Future<String> slice : pending) {
+                writer.write(PartFiles.await(slice));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        System.out.println("Results written to: " + outputPath);
+    }
+
+    private static String formatSlice(double[] prev, double[] curr, double[] change, int start, int end,
+            String rising, String falling, String stable) {
+        StringBuilder rows = new StringBuilder((end - start) * 64);
+        for (int i = start; i < end; i++) {
+            double unemploymentChange = change[i];
+            String outcome;
+            if (!PredictionModel.isSignificantChange(unemploymentChange)) {
+                outcome = stable;
+            } else {
+                outcome = unemploymentChange > 0 ? rising : falling;
+            }
+            rows.append(String.format("%.2f\t%.2f\t%+.2f\t", prev[i], curr[i], unemploymentChange))
+                    .append(outcome).append('\n');
+        }
+        return rows.toString();
+    }
+
+    // Increase and decrease genre columns for a change of the given sign
+    private static String genreColumns(PredictionModel model, double unemploymentChange) {
+        return join(model.expectedIncrease(unemploymentChange)) + "\t"
+                + join(model.expectedDecrease(unemploymentChange));
+    }
+
+    private static String join(PredictionModel.GenreList genres) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < genres.size(); i++) {
+            if (i > 0) {
+                joined.append(',');
+            }
+            joined.append(genres.genre(i));
+        }
+        return joined.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int exitCode = ToolRunner.run(new Configuration(), new ScenarioEvaluator(), args);
+        System.exit(exitCode);
+    }
+}
@@ -0,0 +1,219 @@
+package com.unemployedlistening.analysis;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Permutation-test p-values and bootstrap confidence intervals for the
+ * correlation of each genre's year-over-year deltas.
+ *
+ * The p-value is two-sided: the share of random pairings of the deltas whose
+ * correlation is at least as strong as the observed one. The interval is the
+ * percentile interval of the correlation over resamples of the (year) pairs
+ * drawn with replacement.
+ *
+ * Genres are tested in parallel on a fork-join pool. Each genre gets its own
+ * SplittableRandom, split from one seeded generator in result order, so the
+ * results do not depend on the number of threads or on scheduling. Each leaf
+ * task reuses its primitive buffers across genres and resamples, so the
+ * resampling loops do not allocate.
+ */
+public class SignificanceTest {
+
+    // Resamples per genre for both the permutation test and the bootstrap; 0 disables significance testing
+    public static final String RESAMPLES_KEY = "analysis.significance.resamples";
+
+    // Coverage of the bootstrap confidence interval
+    public static final String CONFIDENCE_KEY = "analysis.significance.confidence";
+    private static final double DEFAULT_CONFIDENCE = 0.95;
+
+    // Seed of the resampling generators
+    public static final String SEED_KEY = "analysis.significance.seed";
+    private static final long DEFAULT_SEED = 42L;
+
+    // Genres handled by one leaf task
+    private static final int LEAF_GENRES = 4;
+
+    private final int resamples;
+    private final double confidence;
+    private final long seed;
+
+    private SignificanceTest(int resamples, double confidence, long seed) {
+        this.resamples = resamples;
+        this.confidence = confidence;
+        this.seed = seed;
+    }
+
+    /**
+     * Reads the test settings, or returns null if significance testing is
+     * disabled.
+     *
+     * @throws IllegalArgumentException if the confidence level is not in (0, 1)
+     */
+    public static SignificanceTest fromConf(Configuration conf) {
+        int resamples = conf.getInt(RESAMPLES_KEY, 0);
+        if (resamples <= 0) {
+            return null;
+        }
+        double confidence = conf.getDouble(CONFIDENCE_KEY, DEFAULT_CONFIDENCE);
+        if (!(confidence > 0 && confidence < 1)) {
+            throw new IllegalArgumentException(CONFIDENCE_KEY + " must be between 0 and 1: " + confidence);
+        }
+        return new SignificanceTest(resamples, confidence, conf.getLong(SEED_KEY, DEFAULT_SEED));
+    }
+
+    /**
+     * Sets the p-value and confidence interval of every result from the
+     * deltas of its genre's series.
+     */
+    public void apply(List<CorrelationAnalyzer.CorrelationResult> results, Map<String, GenreSeries> dataByGenre,
+            int threads) {
+        GenreSeries[] series = new GenreSeries[results.size()];
+        SplittableRandom[] randoms = new SplittableRandom[results.size()];
+        SplittableRandom root = new SplittableRandom(seed);
+        int maxDeltas = 0;
+        for (int i = 0; i < series.length; i++) {
+            series[i] = dataByGenre.get(results.get(i).genre);
+            randoms[i] = root.split();
+            maxDeltas = Math.max(maxDeltas, series[i].deltaCount());
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            pool.invoke(new GenreTask(results, series, randoms, maxDeltas, 0, series.length));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Tests genres [from, to), splitting the range across workers.
+    private class GenreTask extends RecursiveAction {
+
+        private final List<CorrelationAnalyzer.CorrelationResult> results;
+        private final GenreSeries[] series;
+        private final SplittableRandom[] randoms;
+        private final int maxDeltas;
+        private final int from;
+        private final int to;
+
+        GenreTask(List<CorrelationAnalyzer.CorrelationResult> results, GenreSeries[] series,
+                SplittableRandom[] randoms, int maxDeltas, int from, int to) {
+            this.results = results;
+            this.series = series;
+            this.randoms = randoms;
+            this.maxDeltas = maxDeltas;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_GENRES) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new GenreTask(results, series, randoms, maxDeltas, from, mid),
+                        new GenreTask(results, series, randoms, maxDeltas, mid, to));
+                return;
+            }
+
+            // Buffers shared by the genres of this leaf
+            double[] x = new double[maxDeltas];
+            double[] y = new double[maxDeltas];
+            double[] shuffled = new double[maxDeltas];
+            double[] bootstrap = new double[resamples];
+            PearsonAccumulator accumulator = new PearsonAccumulator();
+
+            for (int i = from; i < to; i++) {
+                int n = series[i].deltas(x, y);
+                SplittableRandom random = randoms[i];
+                double[] interval = bootstrapInterval(x, y, n, random, bootstrap, accumulator);
+                // Last, since it centers x
+                double pValue = permutationPValue(x, y, n, random, shuffled);
+                results.get(i).setSignificance(pValue, interval[0], interval[1]);
+            }
+        }
+    }
+
+    /**
+     * Two-sided permutation p-value of the correlation of x and y. Shuffling
+     * y changes neither means nor variances, so each permutation only needs
+     * the dot product of the centered values. Centers x in place.
+     */
+    private double permutationPValue(double[] x, double[] y, int n, SplittableRandom random, double[] shuffled) {
+        double meanX = 0;
+        double meanY = 0;
+        boolean constantX = true;
+        boolean constantY = true;
+        for (int i = 0; i < n; i++) {
+            meanX += x[i];
+            meanY += y[i];
+            constantX &= x[i] == x[0];
+            constantY &= y[i] == y[0];
+        }
+        if (constantX || constantY) {
+            // No correlation to test
+            return 1.0;
+        }
+        meanX /= n;
+        meanY /= n;
+
+        double observed = 0;
+        for (int i = 0; i < n; i++) {
+            x[i] -= meanX;
+            shuffled[i] = y[i] - meanY;
+            observed += x[i] * shuffled[i];
+        }
+
+        // Relative tolerance, so permutations that reproduce the observed pairing count despite rounding
+        double threshold = Math.abs(observed) * (1 - 1e-9);
+        int extreme = 0;
+        for (int r = 0; r < resamples; r++) {
+            // Fisher-Yates shuffle of the centered counts
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                double swap = shuffled[i];
+                shuffled[i] = shuffled[j];
+                shuffled[j] = swap;
+            }
+            double dot = 0;
+            for (int i = 0; i < n; i++) {
+                dot += x[i] * shuffled[i];
+            }
+            if (Math.abs(dot) >= threshold) {
+                extreme++;
+            }
+        }
+        // Counting the observed pairing keeps the p-value above 0
+        return (extreme + 1.0) / (resamples + 1.0);
+    }
+
+    // Percentile bootstrap interval of the correlation, as {low, high}.
+    private double[] bootstrapInterval(double[] x, double[] y, int n, SplittableRandom random, double[] bootstrap,
+            PearsonAccumulator accumulator) {
+        for (int r = 0; r < resamples; r++) {
+            accumulator.reset();
+            for (int i = 0; i < n; i++) {
+                int j = random.nextInt(n);
+                accumulator.add(x[j], y[j]);
+            }
+            bootstrap[r] = accumulator.correlation();
+        }
+        Arrays.sort(bootstrap, 0, resamples);
+
+        double tail = (1 - confidence) / 2;
+        return new double[] { quantile(bootstrap, resamples, tail), quantile(bootstrap, resamples, 1 - tail) };
+    }
+
+    // Linearly interpolated quantile of the first n sorted values.
+    private static double quantile(double[] sorted, int n, double q) {
+        double position = q * (n - 1);
+        int lower = (int) Math.floor(position);
+        int upper = Math.min(lower + 1, n - 1);
+        return sorted[lower] + (position - lower) * (sorted[upper] - sorted[lower]);
+    }
+}
@@ -1,6 +1,8 @@
 package com.unemployedlistening.driver;
 
+import java.io.File;
 import java.net.URI;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
@@ -8,33 +10,117 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.io.compress.Lz4Codec;
+import org.apache.hadoop.io.compress.SnappyCodec;
+import org.apache.hadoop.io.compress.ZStandardCodec;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.MultipleInputs;
-import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MapFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 
+import com.unemployedlistening.analysis.CorrelationAnalyzer;
+import com.unemployedlistening.fused.FusedJoinCountMapper;
+import com.unemployedlistening.fused.FusedUnemploymentReducer;
+import com.unemployedlistening.incremental.DeltaJoinReducer;
+import com.unemployedlistening.incremental.TrackIndex;
+import com.unemployedlistening.io.FinalRecord;
+import com.unemployedlistening.io.FinalRecordOutputFormat;
+import com.unemployedlistening.io.GenreInputFormat;
+import com.unemployedlistening.io.GenreYearKey;
+import com.unemployedlistening.io.JoinValue;
+import com.unemployedlistening.io.MsdInputFormat;
+import com.unemployedlistening.io.TrackIdWritable;
+import com.unemployedlistening.io.TrackIndexRecord;
+import com.unemployedlistening.io.TrackJoinKey;
+import com.unemployedlistening.io.YearGenreKey;
+import com.unemployedlistening.job1.BroadcastJoinMapper;
 import com.unemployedlistening.job1.GenreMapper;
 import com.unemployedlistening.job1.JoinReducer;
 import com.unemployedlistening.job1.MsdMapper;
 import com.unemployedlistening.job2.GenreCountMapper;
 import com.unemployedlistening.job2.GenreCountReducer;
 import com.unemployedlistening.job3.UnemploymentJoinMapper;
+import com.unemployedlistening.job4.CorrelationMapper;
+import com.unemployedlistening.job4.CorrelationReducer;
+import com.unemployedlistening.standalone.StandalonePipeline;
+import com.unemployedlistening.util.FinalPartitions;
+import com.unemployedlistening.util.GenreDictionary;
+import com.unemployedlistening.util.StageFingerprint;
+import com.unemployedlistening.util.TrackIdBloomFilter;
+import com.unemployedlistening.util.UnemploymentLoader;
+import com.unemployedlistening.util.UnemploymentTable;
 
 /**
  * Main driver class that orchestrates the 3-stage MapReduce pipeline:
  * 1. Join MSD with genre annotations by track ID
  * 2. Count genre occurrences per year
  * 3. Merge with unemployment data
+ * With pipeline.correlation.stage=true, a fourth job computes the per-genre
+ * correlations of CorrelationAnalyzer from the Job 2 counts.
+ *
+ * Stages 1 and 2 hand (year, genreId) records to the next stage as
+ * block-compressed SequenceFiles; only the final output is text.
+ * Each stage records a fingerprint of its inputs, code and configuration
+ * next to its output, and stages whose fingerprint still matches are skipped.
+ *
+ * With pipeline.mode=fused the three stages run as a single MapReduce job
+ * instead, without writing the intermediate outputs. With
+ * pipeline.mode=standalone they run in-process on local files without Hadoop
+ * jobs at all. With pipeline.mode=incremental the inputs are a batch of new
+ * MSD records and annotations, which are joined against a persisted track
+ * index and merged into the existing Job 2 counts before Job 3 and the
+ * correlation analysis are rerun.
  */
 public class UnemployedListeningDriver extends Configured implements Tool {
 
     private static final String JOB1_OUTPUT = "intermediate/job1_joined";
     private static final String JOB2_OUTPUT = "intermediate/job2_counts";
+    private static final String GENRE_DICTIONARY = "intermediate/genre_dictionary.txt";
+    private static final String UNEMPLOYMENT_TABLE = "intermediate/unemployment.bin";
+    private static final String ANNOTATED_FILTER = "intermediate/annotated_tracks.bloom";
+    private static final String MSD_FILTER = "intermediate/msd_tracks.bloom";
+    private static final String TRACK_INDEX = "intermediate/track_index";
+    private static final String CORRELATIONS_OUTPUT = "correlations.txt";
+    private static final String CORRELATIONS_JOB_OUTPUT = "correlations";
+
+    // Genre files up to this size are joined map-side; a negative value disables the broadcast join
+    public static final String BROADCAST_THRESHOLD_KEY = "genre.broadcast.threshold.bytes";
+    private static final long DEFAULT_BROADCAST_THRESHOLD = 64L * 1024 * 1024;
+
+    // Target false-positive rate of the reduce-side join's Bloom filters; zero or negative disables pruning
+    public static final String BLOOM_FPP_KEY = "join.bloom.false.positive.rate";
+    private static final double DEFAULT_BLOOM_FPP = 0.01;
+
+    // "staged" runs the three jobs separately (keeps intermediates for debugging); "fused" runs one job;
+    // "standalone" runs in-process on local files; "incremental" folds a batch of new inputs into the last run
+    public static final String PIPELINE_MODE_KEY = "pipeline.mode";
+    public static final String MODE_STAGED = "staged";
+    public static final String MODE_FUSED = "fused";
+    public static final String MODE_STANDALONE = "standalone";
+    public static final String MODE_INCREMENTAL = "incremental";
+
+    // Codec for the intermediate SequenceFiles and map output: zstd, lz4, snappy, deflate or none
+    public static final String INTERMEDIATE_CODEC_KEY = "intermediate.compression.codec";
+    private static final String DEFAULT_INTERMEDIATE_CODEC = "snappy";
+
+    // Reuse stage outputs whose _FINGERPRINT matches their current inputs, code and configuration
+    public static final String STAGE_REUSE_KEY = "pipeline.stage.reuse";
+
+    // Compute per-genre correlations in a fourth MapReduce job instead of leaving it to CorrelationAnalyzer
+    public static final String CORRELATION_STAGE_KEY = "pipeline.correlation.stage";
 
     @Override
     public int run(String[] args) throws Exception {
@@ -45,6 +131,12 @@ public class UnemployedListeningDriver extends Configured implements Tool {
             System.err.println("  genre_input: Path to the genre annotations file (genres.txt)");
             System.err.println("  unemployment_input: Path to the unemployment data file (unemployment.txt)");
             System.err.println("  output: Output directory for final results");
+            System.err.println("  In " + MODE_INCREMENTAL + " mode msd_input and genre_input hold only the new batch");
+            System.err.println("Options: -D " + PIPELINE_MODE_KEY + "=" + MODE_STAGED + "|" + MODE_FUSED + "|"
+                    + MODE_STANDALONE + "|" + MODE_INCREMENTAL);
+            System.err.println("         -D " + INTERMEDIATE_CODEC_KEY + "=zstd|lz4|snappy|deflate|none");
+            System.err.println("         -D " + STAGE_REUSE_KEY + "=true|false");
+            System.err.println("         -D " + CORRELATION_STAGE_KEY + "=true|false");
             return 1;
         }
 
@@ -56,128 +148,626 @@ public class UnemployedListeningDriver extends Configured implements Tool {
         Configuration conf = getConf();
         FileSystem fs = FileSystem.get(conf);
 
+        String mode = conf.get(PIPELINE_MODE_KEY, MODE_STAGED);
+        if (MODE_STANDALONE.equals(mode)) {
+            return runStandalone(conf, msdInput, genreInput, unemploymentInput, finalOutput);
+        } else if (MODE_FUSED.equals(mode)) {
+            return runFused(conf, fs, msdInput, genreInput, new Path(unemploymentInput),
+                    new Path(finalOutput, GENRE_DICTIONARY), new Path(finalOutput, UNEMPLOYMENT_TABLE),
+                    new Path(finalOutput, "final"));
+        } else if (MODE_INCREMENTAL.equals(mode)) {
+            return runIncremental(conf, fs, msdInput, genreInput, unemploymentInput, finalOutput);
+        } else if (!MODE_STAGED.equals(mode)) {
+            System.err.println("Unknown " + PIPELINE_MODE_KEY + ": " + mode + " (expected "
+                    + MODE_STAGED + ", " + MODE_FUSED + ", " + MODE_STANDALONE + " or " + MODE_INCREMENTAL + ")");
+            return 1;
+        }
+
         // Create intermediate output paths
         Path job1OutputPath = new Path(finalOutput, JOB1_OUTPUT);
         Path job2OutputPath = new Path(finalOutput, JOB2_OUTPUT);
+        Path dictionaryPath = new Path(finalOutput, GENRE_DICTIONARY);
         Path finalOutputPath = new Path(finalOutput, "final");
 
-        // Clean up intermediate directories if they exist
-        if (fs.exists(job1OutputPath)) {
-            fs.delete(job1OutputPath, true);
+        boolean reuse = conf.getBoolean(STAGE_REUSE_KEY, true);
+
+        // Build the genre dictionary once; Job 1 emits genre IDs and Job 3 maps them back to names
+        buildGenreDictionary(conf, new Path(genreInput), dictionaryPath);
+
+        // The counts are rebuilt from full inputs, so an incremental track index no longer describes them
+        deleteIfExists(fs, new Path(finalOutput, TRACK_INDEX));
+
+        // Run Job 1: Join MSD with Genres
+        String job1Fingerprint = StageFingerprint.forStage("job1")
+                .addInput(fs, new Path(msdInput))
+                .addInput(fs, new Path(genreInput))
+                .addCode(UnemployedListeningDriver.class)
+                .addConf(conf, INTERMEDIATE_CODEC_KEY)
+                .finish();
+        if (reuse && StageFingerprint.matches(fs, job1OutputPath, job1Fingerprint)) {
+            System.out.println("Job 1 output is up to date; skipping.");
+        } else {
+            deleteIfExists(fs, job1OutputPath);
+            boolean job1Succeeded;
+            if (useBroadcastJoin(conf, fs, new Path(genreInput))) {
+                System.out.println("Starting Job 1: Joining MSD with Genre annotations (broadcast join)...");
+                job1Succeeded = runJob1Broadcast(conf, fs, msdInput, genreInput, dictionaryPath, job1OutputPath);
+            } else {
+                System.out.println("Starting Job 1: Joining MSD with Genre annotations...");
+                job1Succeeded = runJob1(conf, fs, msdInput, genreInput, dictionaryPath, new Path(finalOutput),
+                        job1OutputPath);
+            }
+            if (!job1Succeeded) {
+                System.err.println("Job 1 failed!");
+                return 1;
+            }
+            StageFingerprint.write(fs, job1OutputPath, job1Fingerprint);
+            System.out.println("Job 1 completed successfully.");
+        }
+
+        // Run Job 2: Count Genres per Year
+        String job2Fingerprint = StageFingerprint.forStage("job2")
+                .addUpstream(job1Fingerprint)
+                .addCode(UnemployedListeningDriver.class)
+                .addConf(conf, INTERMEDIATE_CODEC_KEY, "mapreduce.job.reduces")
+                .finish();
+        if (reuse && StageFingerprint.matches(fs, job2OutputPath, job2Fingerprint)) {
+            System.out.println("Job 2 output is up to date; skipping.");
+        } else {
+            deleteIfExists(fs, job2OutputPath);
+            System.out.println("Starting Job 2: Counting genres per year...");
+            if (!runJob2(conf, job1OutputPath, job2OutputPath)) {
+                System.err.println("Job 2 failed!");
+                return 1;
+            }
+            StageFingerprint.write(fs, job2OutputPath, job2Fingerprint);
+            System.out.println("Job 2 completed successfully.");
         }
-        if (fs.exists(job2OutputPath)) {
-            fs.delete(job2OutputPath, true);
+
+        // Run Job 3: Merge with Unemployment Data
+        String job3Fingerprint = StageFingerprint.forStage("job3")
+                .addUpstream(job2Fingerprint)
+                .addInput(fs, new Path(unemploymentInput))
+                .addCode(UnemployedListeningDriver.class)
+                .addConf(conf, FinalPartitions.PARTITION_BY_KEY)
+                .finish();
+        if (reuse && StageFingerprint.matches(fs, finalOutputPath, job3Fingerprint)) {
+            System.out.println("Job 3 output is up to date; skipping.");
+        } else {
+            deleteIfExists(fs, finalOutputPath);
+            Path unemploymentTablePath = writeUnemploymentTable(conf, unemploymentInput, finalOutput);
+            System.out.println("Starting Job 3: Merging with unemployment data...");
+            if (!runJob3(conf, fs, job2OutputPath, unemploymentTablePath, dictionaryPath, finalOutputPath)) {
+                System.err.println("Job 3 failed!");
+                return 1;
+            }
+            StageFingerprint.write(fs, finalOutputPath, job3Fingerprint);
+            System.out.println("Job 3 completed successfully.");
         }
-        if (fs.exists(finalOutputPath)) {
-            fs.delete(finalOutputPath, true);
+
+        // Run Job 4 (optional): Correlate genre count changes with unemployment changes
+        if (conf.getBoolean(CORRELATION_STAGE_KEY, false)) {
+            Path correlationsOutputPath = new Path(finalOutput, CORRELATIONS_JOB_OUTPUT);
+            String job4Fingerprint = StageFingerprint.forStage("job4")
+                    .addUpstream(job2Fingerprint)
+                    .addInput(fs, new Path(unemploymentInput))
+                    .addCode(UnemployedListeningDriver.class)
+                    .addConf(conf, "mapreduce.job.reduces")
+                    .finish();
+            if (reuse && StageFingerprint.matches(fs, correlationsOutputPath, job4Fingerprint)) {
+                System.out.println("Job 4 output is up to date; skipping.");
+            } else {
+                deleteIfExists(fs, correlationsOutputPath);
+                Path unemploymentTablePath = writeUnemploymentTable(conf, unemploymentInput, finalOutput);
+                System.out.println("Starting Job 4: Correlating genre counts with unemployment...");
+                if (!runJob4(conf, fs, job2OutputPath, unemploymentTablePath, dictionaryPath,
+                        correlationsOutputPath)) {
+                    System.err.println("Job 4 failed!");
+                    return 1;
+                }
+                StageFingerprint.write(fs, correlationsOutputPath, job4Fingerprint);
+                System.out.println("Job 4 completed successfully.");
+            }
+            System.out.println("Correlations written to: " + correlationsOutputPath);
         }
 
-        // Run Job 1: Join MSD with Genres
-        System.out.println("Starting Job 1: Joining MSD with Genre annotations...");
-        if (!runJob1(conf, msdInput, genreInput, job1OutputPath)) {
-            System.err.println("Job 1 failed!");
+        System.out.println("All jobs completed. Output written to: " + finalOutputPath);
+        return 0;
+    }
+
+    // Run the whole pipeline as one job and write only the final output.
+    private int runFused(Configuration conf, FileSystem fs, String msdInput, String genreInput,
+            Path unemploymentInput, Path dictionaryPath, Path unemploymentTablePath, Path finalOutputPath)
+            throws Exception {
+        deleteIfExists(fs, finalOutputPath);
+
+        buildGenreDictionary(conf, new Path(genreInput), dictionaryPath);
+        UnemploymentTable.load(unemploymentInput, conf).write(unemploymentTablePath, conf);
+
+        System.out.println("Starting fused job: Join, count and merge with unemployment data...");
+        if (!runFusedJob(conf, fs, msdInput, genreInput, unemploymentTablePath, dictionaryPath, finalOutputPath)) {
+            System.err.println("Fused job failed!");
             return 1;
         }
-        System.out.println("Job 1 completed successfully.");
+        System.out.println("Fused job completed successfully.");
 
-        // Run Job 2: Count Genres per Year
-        System.out.println("Starting Job 2: Counting genres per year...");
-        if (!runJob2(conf, job1OutputPath, job2OutputPath)) {
-            System.err.println("Job 2 failed!");
+        System.out.println("All jobs completed. Output written to: " + finalOutputPath);
+        return 0;
+    }
+
+    // Fold a batch of new MSD records and annotations into the counts of earlier runs and refresh the results.
+    private int runIncremental(Configuration conf, FileSystem fs, String msdDelta, String genreDelta,
+            String unemploymentInput, String finalOutput) throws Exception {
+        Path job2OutputPath = new Path(finalOutput, JOB2_OUTPUT);
+        Path mergedOutputPath = new Path(finalOutput, JOB2_OUTPUT + "_merged");
+        Path dictionaryPath = new Path(finalOutput, GENRE_DICTIONARY);
+        Path indexRoot = new Path(finalOutput, TRACK_INDEX);
+        Path finalOutputPath = new Path(finalOutput, "final");
+
+        // Without an index the batch is the whole corpus; counts without an index (left by a staged run) cannot be
+        // extended, since the delta job could not tell which of the batch's tracks they already include
+        List<Path> generations = TrackIndex.listGenerations(fs, indexRoot);
+        boolean firstBatch = generations.isEmpty();
+        if (firstBatch && fs.exists(job2OutputPath)) {
+            System.err.println("Cannot run incremental mode: " + job2OutputPath + " holds counts without a track index"
+                    + " (left by a " + MODE_STAGED + " run). Start incremental runs in a new output directory,"
+                    + " or delete " + job2OutputPath + " to treat this batch as the whole corpus.");
             return 1;
         }
-        System.out.println("Job 2 completed successfully.");
 
-        // Run Job 3: Merge with Unemployment Data
+        // Existing genres keep their IDs, since the counts and the index refer to them; new genres are appended
+        GenreDictionary dictionary = firstBatch ? GenreDictionary.empty() : GenreDictionary.load(dictionaryPath, conf);
+        dictionary = dictionary.extend(new Path(genreDelta), conf);
+        dictionary.write(dictionaryPath, conf);
+        System.out.println("Extended genre dictionary to " + dictionary.size() + " genres.");
+
+        Path generation = TrackIndex.nextGeneration(indexRoot, generations);
+        System.out.println("Starting delta job: Joining new tracks and annotations against the track index ("
+                + generations.size() + " generations)...");
+        if (!runDeltaJoin(conf, fs, msdDelta, genreDelta, dictionaryPath, generations, generation)) {
+            System.err.println("Delta job failed!");
+            return 1;
+        }
+        System.out.println("Delta job completed successfully.");
+
+        deleteIfExists(fs, mergedOutputPath);
+        System.out.println("Starting merge job: Adding count deltas to genre counts...");
+        if (!runCountMerge(conf, firstBatch ? null : job2OutputPath, generation, mergedOutputPath)) {
+            System.err.println("Merge job failed!");
+            return 1;
+        }
+        if (!replaceCounts(fs, mergedOutputPath, job2OutputPath)) {
+            return 1;
+        }
+        // Only now does the generation count as applied; a failure before this point reruns the whole batch
+        TrackIndex.commitGeneration(fs, generation, conf.getInt("mapreduce.job.reduces", 1));
+        System.out.println("Merge job completed successfully.");
+
+        deleteIfExists(fs, finalOutputPath);
+        Path unemploymentTablePath = writeUnemploymentTable(conf, unemploymentInput, finalOutput);
         System.out.println("Starting Job 3: Merging with unemployment data...");
-        if (!runJob3(conf, job2OutputPath, unemploymentInput, finalOutputPath)) {
+        if (!runJob3(conf, fs, job2OutputPath, unemploymentTablePath, dictionaryPath, finalOutputPath)) {
             System.err.println("Job 3 failed!");
             return 1;
         }
         System.out.println("Job 3 completed successfully.");
 
-        System.out.println("All jobs completed. Output written to: " + finalOutputPath);
+        Path correlationsPath;
+        if (conf.getBoolean(CORRELATION_STAGE_KEY, false)) {
+            correlationsPath = new Path(finalOutput, CORRELATIONS_JOB_OUTPUT);
+            deleteIfExists(fs, correlationsPath);
+            System.out.println("Starting Job 4: Correlating genre counts with unemployment...");
+            if (!runJob4(conf, fs, job2OutputPath, unemploymentTablePath, dictionaryPath, correlationsPath)) {
+                System.err.println("Job 4 failed!");
+                return 1;
+            }
+            System.out.println("Job 4 completed successfully.");
+        } else {
+            correlationsPath = new Path(finalOutput, CORRELATIONS_OUTPUT);
+            int analyzed = ToolRunner.run(conf, new CorrelationAnalyzer(),
+                    new String[] { finalOutputPath.toString(), correlationsPath.toString() });
+            if (analyzed != 0) {
+                System.err.println("Correlation analysis failed!");
+                return analyzed;
+            }
+        }
+
+        System.out.println("All jobs completed. Output written to: " + finalOutputPath + " and " + correlationsPath);
         return 0;
     }
 
+    // Delta job: reduce-side join of the batch, looking up earlier batches of each touched track in the index.
+    private boolean runDeltaJoin(Configuration conf, FileSystem fs, String msdDelta, String genreDelta,
+            Path dictionaryPath, List<Path> generations, Path outputPath) throws Exception {
+        Job job = Job.getInstance(conf, "Unemployed Listening - Incremental: Join Delta with Track Index");
+        job.setJarByClass(UnemployedListeningDriver.class);
+
+        job.addCacheFile(cacheUri(fs, dictionaryPath, GenreDictionary.CACHE_LINK));
+
+        String[] generationDirs = new String[generations.size()];
+        for (int i = 0; i < generationDirs.length; i++) {
+            generationDirs[i] = fs.makeQualified(generations.get(i)).toString();
+        }
+        job.getConfiguration().setStrings(TrackIndex.GENERATIONS_KEY, generationDirs);
+
+        // No Bloom filters: a delta record's join partner is usually in the index, not in the other delta file
+        MultipleInputs.addInputPath(job, new Path(msdDelta), MsdInputFormat.class, MsdMapper.class);
+        MultipleInputs.addInputPath(job, new Path(genreDelta), GenreInputFormat.class, GenreMapper.class);
+
+        job.setReducerClass(DeltaJoinReducer.class);
+
+        // Partitioned like the index, so each reducer writes one index partition
+        job.setPartitionerClass(TrackJoinKey.TrackIdPartitioner.class);
+        job.setGroupingComparatorClass(TrackJoinKey.GroupingComparator.class);
+
+        job.setMapOutputKeyClass(TrackJoinKey.class);
+        job.setMapOutputValueClass(JoinValue.class);
+
+        job.setOutputKeyClass(YearGenreKey.class);
+        job.setOutputValueClass(IntWritable.class);
+        MultipleOutputs.addNamedOutput(job, TrackIndex.INDEX_OUTPUT, MapFileOutputFormat.class,
+                TrackIdWritable.class, TrackIndexRecord.class);
+
+        FileOutputFormat.setOutputPath(job, outputPath);
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        compressMapOutput(job);
+        compressIntermediateOutput(job);
+
+        return job.waitForCompletion(true);
+    }
+
+    // Merge job: sum the existing counts (if any) and the delta job's count deltas per (year, genreId).
+    private boolean runCountMerge(Configuration conf, Path countsPath, Path deltaPath, Path outputPath)
+            throws Exception {
+        Job job = Job.getInstance(conf, "Unemployed Listening - Incremental: Merge Count Deltas");
+        job.setJarByClass(UnemployedListeningDriver.class);
+
+        job.setMapperClass(Mapper.class);
+        job.setCombinerClass(GenreCountCombiner.class);
+        job.setReducerClass(GenreCountReducer.class);
+
+        job.setMapOutputKeyClass(YearGenreKey.class);
+        job.setMapOutputValueClass(IntWritable.class);
+
+        job.setOutputKeyClass(YearGenreKey.class);
+        job.setOutputValueClass(IntWritable.class);
+
+        // Both inputs are already aggregated per (year, genreId), so this is small whatever the corpus size
+        if (countsPath != null) {
+            FileInputFormat.addInputPath(job, countsPath);
+        }
+        FileInputFormat.addInputPath(job, new Path(deltaPath, "part-r-*"));
+        FileOutputFormat.setOutputPath(job, outputPath);
+
+        job.setInputFormatClass(SequenceFileInputFormat.class);
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        compressMapOutput(job);
+        compressIntermediateOutput(job);
+
+        return job.waitForCompletion(true);
+    }
+
+    // Move merged counts into place, keeping the old counts aside until the move succeeds.
+    private boolean replaceCounts(FileSystem fs, Path mergedPath, Path countsPath) throws Exception {
+        Path previousPath = countsPath.suffix("_previous");
+        deleteIfExists(fs, previousPath);
+        if (fs.exists(countsPath) && !fs.rename(countsPath, previousPath)) {
+            System.err.println("Cannot move existing counts aside to " + previousPath);
+            return false;
+        }
+        if (!fs.rename(mergedPath, countsPath)) {
+            System.err.println("Cannot move merged counts to " + countsPath);
+            if (fs.exists(previousPath) && !fs.rename(previousPath, countsPath)) {
+                System.err.println("Cannot restore previous counts; they remain in " + previousPath);
+            }
+            return false;
+        }
+        deleteIfExists(fs, previousPath);
+        return true;
+    }
+
+    // Run the whole pipeline in this JVM on local files, without submitting any jobs.
+    private int runStandalone(Configuration conf, String msdInput, String genreInput, String unemploymentInput,
+            String finalOutput) throws Exception {
+        System.out.println("Starting standalone pipeline: Join, count and merge with unemployment data...");
+        long start = System.currentTimeMillis();
+        new StandalonePipeline(conf).run(localFile(msdInput), localFile(genreInput), localFile(unemploymentInput),
+                localFile(finalOutput));
+        System.out.println("Standalone pipeline completed in " + (System.currentTimeMillis() - start) + " ms.");
+
+        System.out.println("All jobs completed. Output written to: " + new Path(finalOutput, "final"));
+        return 0;
+    }
+
+    // Resolve a path argument to a local file; standalone mode cannot read other filesystems.
+    private File localFile(String path) throws Exception {
+        URI uri = new URI(path);
+        if (uri.getScheme() != null && !"file".equals(uri.getScheme())) {
+            throw new IllegalArgumentException(MODE_STANDALONE + " mode needs local paths: " + path);
+        }
+        return new File(uri.getPath());
+    }
+
+    // Fused job: broadcast join and count in the mapper, unemployment lookup in the reducer.
+    private boolean runFusedJob(Configuration conf, FileSystem fs, String msdInput, String genreInput,
+            Path unemploymentTablePath, Path dictionaryPath, Path outputPath) throws Exception {
+        Job job = Job.getInstance(conf, "Unemployed Listening - Fused Pipeline");
+        job.setJarByClass(UnemployedListeningDriver.class);
+
+        // Genre table is joined map-side, unemployment data is looked up reduce-side
+        job.addCacheFile(cacheUri(fs, new Path(genreInput), BroadcastJoinMapper.GENRE_CACHE_LINK));
+        job.addCacheFile(cacheUri(fs, unemploymentTablePath, UnemploymentLoader.CACHE_LINK));
+        job.addCacheFile(cacheUri(fs, dictionaryPath, GenreDictionary.CACHE_LINK));
+
+        job.setMapperClass(FusedJoinCountMapper.class);
+        // Mappers already combine in memory; the combiner only merges totals from early flushes
+        job.setCombinerClass(GenreCountCombiner.class);
+        job.setReducerClass(FusedUnemploymentReducer.class);
+
+        job.setMapOutputKeyClass(YearGenreKey.class);
+        job.setMapOutputValueClass(IntWritable.class);
+
+        job.setOutputKeyClass(FinalRecord.class);
+        job.setOutputValueClass(NullWritable.class);
+
+        FileInputFormat.addInputPath(job, new Path(msdInput));
+        FileOutputFormat.setOutputPath(job, outputPath);
+
+        job.setInputFormatClass(MsdInputFormat.class);
+        setFinalOutputFormat(job);
+        compressMapOutput(job);
+
+        return job.waitForCompletion(true);
+    }
+
     // Job 1: Join MSD data with genre annotations using reduce-side join.
-    private boolean runJob1(Configuration conf, String msdInput, String genreInput, Path outputPath) throws Exception {
+    private boolean runJob1(Configuration conf, FileSystem fs, String msdInput, String genreInput,
+            Path dictionaryPath, Path outputRoot, Path outputPath) throws Exception {
         Job job = Job.getInstance(conf, "Unemployed Listening - Job 1: Join MSD with Genres");
         job.setJarByClass(UnemployedListeningDriver.class);
 
+        // Genre mappers emit dictionary IDs instead of genre names
+        job.addCacheFile(cacheUri(fs, dictionaryPath, GenreDictionary.CACHE_LINK));
+
+        // Ship Bloom filters so each side can drop records that cannot find a join partner
+        double falsePositiveRate = conf.getDouble(BLOOM_FPP_KEY, DEFAULT_BLOOM_FPP);
+        if (falsePositiveRate > 0) {
+            Path annotatedFilterPath = new Path(outputRoot, ANNOTATED_FILTER);
+            Path msdFilterPath = new Path(outputRoot, MSD_FILTER);
+            TrackIdBloomFilter.fromGenreFile(new Path(genreInput), conf, falsePositiveRate)
+                    .save(annotatedFilterPath, conf);
+            TrackIdBloomFilter.fromMsdFile(new Path(msdInput), conf, falsePositiveRate,
+                    UnemploymentLoader.EARLIEST_YEAR).save(msdFilterPath, conf);
+            job.addCacheFile(cacheUri(fs, annotatedFilterPath, MsdMapper.ANNOTATED_FILTER_LINK));
+            job.addCacheFile(cacheUri(fs, msdFilterPath, GenreMapper.MSD_FILTER_LINK));
+        }
+
         // Use MultipleInputs for different input formats
-        MultipleInputs.addInputPath(job, new Path(msdInput), TextInputFormat.class, MsdMapper.class);
-        MultipleInputs.addInputPath(job, new Path(genreInput), TextInputFormat.class, GenreMapper.class);
+        MultipleInputs.addInputPath(job, new Path(msdInput), MsdInputFormat.class, MsdMapper.class);
+        MultipleInputs.addInputPath(job, new Path(genreInput), GenreInputFormat.class, GenreMapper.class);
 
         job.setReducerClass(JoinReducer.class);
 
-        job.setMapOutputKeyClass(Text.class);
-        job.setMapOutputValueClass(Text.class);
+        // Secondary sort: partition and group by track ID, but deliver MSD years before genres
+        job.setPartitionerClass(TrackJoinKey.TrackIdPartitioner.class);
+        job.setGroupingComparatorClass(TrackJoinKey.GroupingComparator.class);
 
-        job.setOutputKeyClass(Text.class);
+        job.setMapOutputKeyClass(TrackJoinKey.class);
+        job.setMapOutputValueClass(JoinValue.class);
+
+        job.setOutputKeyClass(YearGenreKey.class);
         job.setOutputValueClass(NullWritable.class);
 
         FileOutputFormat.setOutputPath(job, outputPath);
-        job.setOutputFormatClass(TextOutputFormat.class);
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        compressMapOutput(job);
+        compressIntermediateOutput(job);
 
         return job.waitForCompletion(true);
     }
 
+    // Job 1 (broadcast variant): map-only join against an in-memory copy of the genre file.
+    private boolean runJob1Broadcast(Configuration conf, FileSystem fs, String msdInput, String genreInput,
+            Path dictionaryPath, Path outputPath) throws Exception {
+        Job job = Job.getInstance(conf, "Unemployed Listening - Job 1: Broadcast Join MSD with Genres");
+        job.setJarByClass(UnemployedListeningDriver.class);
+
+        // Ship the genre file to every mapper through the distributed cache
+        job.addCacheFile(cacheUri(fs, new Path(genreInput), BroadcastJoinMapper.GENRE_CACHE_LINK));
+        job.addCacheFile(cacheUri(fs, dictionaryPath, GenreDictionary.CACHE_LINK));
+
+        job.setMapperClass(BroadcastJoinMapper.class);
+        job.setNumReduceTasks(0); // Map-only job
+
+        job.setOutputKeyClass(YearGenreKey.class);
+        job.setOutputValueClass(NullWritable.class);
+
+        FileInputFormat.addInputPath(job, new Path(msdInput));
+        FileOutputFormat.setOutputPath(job, outputPath);
+
+        job.setInputFormatClass(MsdInputFormat.class);
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        compressIntermediateOutput(job);
+
+        return job.waitForCompletion(true);
+    }
+
+    // Remove a stale stage output before the stage is rerun.
+    private void deleteIfExists(FileSystem fs, Path path) throws Exception {
+        if (fs.exists(path)) {
+            fs.delete(path, true);
+        }
+    }
+
+    // Build the genre name to ID dictionary from the genre file and write it where jobs can cache it.
+    private void buildGenreDictionary(Configuration conf, Path genrePath, Path dictionaryPath) throws Exception {
+        GenreDictionary dictionary = GenreDictionary.build(genrePath, conf);
+        dictionary.write(dictionaryPath, conf);
+        System.out.println("Built genre dictionary with " + dictionary.size() + " genres.");
+    }
+
+    // Convert the unemployment file to the binary table tasks load, so they skip parsing it.
+    private Path writeUnemploymentTable(Configuration conf, String unemploymentInput, String finalOutput)
+            throws Exception {
+        Path tablePath = new Path(finalOutput, UNEMPLOYMENT_TABLE);
+        UnemploymentTable.load(new Path(unemploymentInput), conf).write(tablePath, conf);
+        return tablePath;
+    }
+
+    // Decide whether the genre file is small enough to broadcast to every mapper.
+    private boolean useBroadcastJoin(Configuration conf, FileSystem fs, Path genrePath) throws Exception {
+        long threshold = conf.getLong(BROADCAST_THRESHOLD_KEY, DEFAULT_BROADCAST_THRESHOLD);
+        if (threshold < 0) {
+            return false;
+        }
+        return fs.getContentSummary(genrePath).getLength() <= threshold;
+    }
+
+    // Compress map output with the intermediate codec, if one is selected.
+    private void compressMapOutput(Job job) {
+        Class<? extends CompressionCodec> codec = intermediateCodec(job.getConfiguration());
+        if (codec != null) {
+            job.getConfiguration().setBoolean("mapreduce.map.output.compress", true);
+            job.getConfiguration().setClass("mapreduce.map.output.compress.codec", codec, CompressionCodec.class);
+        }
+    }
+
+    // Write block-compressed SequenceFiles with the intermediate codec, if one is selected.
+    private void compressIntermediateOutput(Job job) {
+        Class<? extends CompressionCodec> codec = intermediateCodec(job.getConfiguration());
+        if (codec != null) {
+            FileOutputFormat.setCompressOutput(job, true);
+            FileOutputFormat.setOutputCompressorClass(job, codec);
+            SequenceFileOutputFormat.setOutputCompressionType(job, SequenceFile.CompressionType.BLOCK);
+        }
+    }
+
+    // Resolve the intermediate codec name; null means intermediates are written uncompressed.
+    private Class<? extends CompressionCodec> intermediateCodec(Configuration conf) {
+        String name = conf.get(INTERMEDIATE_CODEC_KEY, DEFAULT_INTERMEDIATE_CODEC).trim().toLowerCase();
+        switch (name) {
+            case "zstd":
+                return ZStandardCodec.class;
+            case "lz4":
+                return Lz4Codec.class;
+            case "snappy":
+                return SnappyCodec.class;
+            case "deflate":
+                return DefaultCodec.class;
+            case "none":
+                return null;
+            default:
+                throw new IllegalArgumentException("Unknown " + INTERMEDIATE_CODEC_KEY + ": " + name);
+        }
+    }
+
+    // Write final records as text, into year or decade directories if final.partition.by asks for it.
+    private void setFinalOutputFormat(Job job) {
+        if (FinalPartitions.fromConf(job.getConfiguration()).isPartitioned()) {
+            // Records go through MultipleOutputs; lazy output avoids empty default part files
+            LazyOutputFormat.setOutputFormatClass(job, FinalRecordOutputFormat.class);
+        } else {
+            job.setOutputFormatClass(FinalRecordOutputFormat.class);
+        }
+    }
+
+    // Build a distributed cache URI for the given path, symlinked under linkName in the task directory.
+    private URI cacheUri(FileSystem fs, Path path, String linkName) throws Exception {
+        URI uri = fs.makeQualified(path).toUri();
+        return new URI(uri.getScheme(), uri.getAuthority(), uri.getPath(), null, linkName);
+    }
+
     // Job 2: Count genre occurrences per year.
     private boolean runJob2(Configuration conf, Path inputPath, Path outputPath) throws Exception {
         Job job = Job.getInstance(conf, "Unemployed Listening - Job 2: Count Genres per Year");
         job.setJarByClass(UnemployedListeningDriver.class);
 
         job.setMapperClass(GenreCountMapper.class);
+        // Mappers already combine in memory; the combiner only merges totals from early flushes
         job.setCombinerClass(GenreCountCombiner.class);
         job.setReducerClass(GenreCountReducer.class);
 
-        job.setMapOutputKeyClass(Text.class);
+        job.setMapOutputKeyClass(YearGenreKey.class);
         job.setMapOutputValueClass(IntWritable.class);
 
-        job.setOutputKeyClass(Text.class);
-        job.setOutputValueClass(NullWritable.class);
+        job.setOutputKeyClass(YearGenreKey.class);
+        job.setOutputValueClass(IntWritable.class);
 
         FileInputFormat.addInputPath(job, inputPath);
         FileOutputFormat.setOutputPath(job, outputPath);
 
-        job.setInputFormatClass(TextInputFormat.class);
-        job.setOutputFormatClass(TextOutputFormat.class);
+        job.setInputFormatClass(SequenceFileInputFormat.class);
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        compressMapOutput(job);
+        compressIntermediateOutput(job);
 
         return job.waitForCompletion(true);
     }
 
     // Job 3: Map-side join with unemployment data.
-    private boolean runJob3(Configuration conf, Path inputPath, String unemploymentInput, Path outputPath)
-            throws Exception {
+    private boolean runJob3(Configuration conf, FileSystem fs, Path inputPath, Path unemploymentTablePath,
+            Path dictionaryPath, Path outputPath) throws Exception {
         Job job = Job.getInstance(conf, "Unemployed Listening - Job 3: Merge with Unemployment");
         job.setJarByClass(UnemployedListeningDriver.class);
 
-        // Add unemployment data to distributed cache
-        job.addCacheFile(new URI(unemploymentInput));
+        // Add the unemployment table and the genre dictionary to distributed cache
+        job.addCacheFile(cacheUri(fs, unemploymentTablePath, UnemploymentLoader.CACHE_LINK));
+        job.addCacheFile(cacheUri(fs, dictionaryPath, GenreDictionary.CACHE_LINK));
 
         job.setMapperClass(UnemploymentJoinMapper.class);
         job.setNumReduceTasks(0); // Map-only job
 
+        job.setOutputKeyClass(FinalRecord.class);
+        job.setOutputValueClass(NullWritable.class);
+
+        FileInputFormat.addInputPath(job, inputPath);
+        FileOutputFormat.setOutputPath(job, outputPath);
+
+        job.setInputFormatClass(SequenceFileInputFormat.class);
+        setFinalOutputFormat(job);
+
+        return job.waitForCompletion(true);
+    }
+
+    // Job 4: Per-genre correlations, with each genre's counts delivered to one reducer in year order.
+    private boolean runJob4(Configuration conf, FileSystem fs, Path inputPath, Path unemploymentTablePath,
+            Path dictionaryPath, Path outputPath) throws Exception {
+        Job job = Job.getInstance(conf, "Unemployed Listening - Job 4: Correlate with Unemployment");
+        job.setJarByClass(UnemployedListeningDriver.class);
+
+        job.addCacheFile(cacheUri(fs, unemploymentTablePath, UnemploymentLoader.CACHE_LINK));
+        job.addCacheFile(cacheUri(fs, dictionaryPath, GenreDictionary.CACHE_LINK));
+
+        job.setMapperClass(CorrelationMapper.class);
+        job.setReducerClass(CorrelationReducer.class);
+
+        // Secondary sort: partition and group by genre, but deliver years in order
+        job.setPartitionerClass(GenreYearKey.GenrePartitioner.class);
+        job.setGroupingComparatorClass(GenreYearKey.GroupingComparator.class);
+
+        job.setMapOutputKeyClass(GenreYearKey.class);
+        job.setMapOutputValueClass(IntWritable.class);
+
         job.setOutputKeyClass(Text.class);
         job.setOutputValueClass(NullWritable.class);
 
         FileInputFormat.addInputPath(job, inputPath);
         FileOutputFormat.setOutputPath(job, outputPath);
 
-        job.setInputFormatClass(TextInputFormat.class);
+        job.setInputFormatClass(SequenceFileInputFormat.class);
         job.setOutputFormatClass(TextOutputFormat.class);
+        compressMapOutput(job);
 
         return job.waitForCompletion(true);
     }
 
-    // Inner combiner class for Job 2 to reduce data shuffled.
+    // Inner combiner class for Job 2 and the fused job to reduce data shuffled.
     public static class GenreCountCombiner
-            extends org.apache.hadoop.mapreduce.Reducer<Text, IntWritable, Text, IntWritable> {
+            extends org.apache.hadoop.mapreduce.Reducer<YearGenreKey, IntWritable, YearGenreKey, IntWritable> {
         private IntWritable result = new IntWritable();
 
         @Override
-        protected void reduce(Text key, Iterable<IntWritable> values, Context context)
+        protected void reduce(YearGenreKey key, Iterable<IntWritable> values, Context context)
                 throws java.io.IOException, InterruptedException {
             int sum = 0;
             for (IntWritable val : values) {
@@ -0,0 +1,70 @@
+package com.unemployedlistening.fused;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import com.unemployedlistening.io.YearGenreKey;
+import com.unemployedlistening.job1.BroadcastJoinMapper;
+import com.unemployedlistening.util.GenreAnnotationTable;
+import com.unemployedlistening.util.UnemploymentLoader;
+import com.unemployedlistening.util.YearGenreCounts;
+
+/**
+ * Mapper for the fused single-job pipeline.
+ * Joins each MSD record against the broadcast genre table (loaded and looked
+ * up exactly as in Job 1's BroadcastJoinMapper) and counts year/genre pairs in memory (as in Job 2), so
+ * neither the joined records nor the counts are materialized on HDFS.
+ * Input: (trackId, year) records from MsdInputFormat
+ * Output: ((year, genreId), count)
+ */
+public class FusedJoinCountMapper extends Mapper<Text, IntWritable, YearGenreKey, IntWritable> {
+
+    private static final IntWritable ONE = new IntWritable(1);
+
+    private GenreAnnotationTable genreTable;
+    private int[] genreIds;
+    private YearGenreKey compositeKey = new YearGenreKey();
+    private YearGenreCounts counts;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        genreTable = BroadcastJoinMapper.loadGenreTable(context);
+        genreIds = new int[genreTable.maxGenreCount()];
+
+        int maxEntries = context.getConfiguration().getInt(YearGenreCounts.MAX_ENTRIES_KEY,
+                YearGenreCounts.DEFAULT_MAX_ENTRIES);
+        if (maxEntries > 0) {
+            counts = new YearGenreCounts(maxEntries);
+        }
+    }
+
+    @Override
+    protected void map(Text trackId, IntWritable year, Context context) throws IOException, InterruptedException {
+        // Filter out songs from before we have unemployment data
+        if (year.get() < UnemploymentLoader.EARLIEST_YEAR) {
+            return;
+        }
+
+        // Use (year, genreId) as composite key
+        int count = genreTable.lookup(trackId, genreIds);
+        for (int i = 0; i < count; i++) {
+            int genreId = genreIds[i];
+            if (counts == null) {
+                compositeKey.set(year.get(), genreId);
+                context.write(compositeKey, ONE);
+            } else if (counts.add(year.get(), genreId, 1)) {
+                counts.flush(context);
+            }
+        }
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        if (counts != null) {
+            counts.flush(context);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.unemployedlistening.fused;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+import com.unemployedlistening.io.FinalRecord;
+import com.unemployedlistening.io.YearGenreKey;
+import com.unemployedlistening.util.FinalPartitions;
+import com.unemployedlistening.util.GenreDictionary;
+import com.unemployedlistening.util.UnemploymentLoader;
+import com.unemployedlistening.util.UnemploymentTable;
+
+/**
+ * Reducer for the fused single-job pipeline.
+ * Sums the per-year genre counts (as in Job 2) and attaches the annual
+ * unemployment rate loaded from the distributed cache (as in Job 3).
+ * Input: ((year, genreId), [count, ...]), partial counts from the mappers
+ * Output: (year, genre, count, unemployment_rate) records, written as text by
+ * FinalRecordOutputFormat, into year or decade directories if
+ * final.partition.by is set
+ */
+public class FusedUnemploymentReducer extends Reducer<YearGenreKey, IntWritable, FinalRecord, NullWritable> {
+
+    private UnemploymentTable unemploymentData;
+    private GenreDictionary dictionary;
+    private FinalRecord outputKey = new FinalRecord();
+    private FinalPartitions partitions;
+    // Writes to the year or decade directory when final.partition.by is set; null otherwise
+    private MultipleOutputs<FinalRecord, NullWritable> outputs;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        unemploymentData = UnemploymentTable.loadFromCache(UnemploymentLoader.CACHE_LINK, context);
+        dictionary = GenreDictionary.loadFromCache(GenreDictionary.CACHE_LINK, context);
+
+        partitions = FinalPartitions.fromConf(context.getConfiguration());
+        if (partitions.isPartitioned()) {
+            outputs = new MultipleOutputs<>(context);
+        }
+    }
+
+    @Override
+    protected void reduce(YearGenreKey key, Iterable<IntWritable> values, Context context)
+            throws IOException, InterruptedException {
+        int year = key.getYear();
+
+        // Look up unemployment rate for this year
+        double unemploymentRate = unemploymentData.rate(year);
+
+        if (Double.isNaN(unemploymentRate)) {
+            // Skip years without unemployment data
+            return;
+        }
+
+        int count = 0;
+        for (IntWritable value : values) {
+            count += value.get();
+        }
+
+        outputKey.set(year, dictionary.nameBytes(key.getGenreId()), count, unemploymentRate);
+        if (outputs != null) {
+            outputs.write(outputKey, NullWritable.get(), partitions.basePath(year));
+        } else {
+            context.write(outputKey, NullWritable.get());
+        }
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        if (outputs != null) {
+            outputs.close();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.unemployedlistening.incremental;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+import com.unemployedlistening.io.JoinValue;
+import com.unemployedlistening.io.TrackIndexRecord;
+import com.unemployedlistening.io.TrackJoinKey;
+import com.unemployedlistening.io.YearGenreKey;
+import com.unemployedlistening.util.YearGenreCounts;
+
+/**
+ * Reducer of the incremental delta job: joins a batch of new MSD records and
+ * genre annotations against the track index and emits only the change in
+ * (year, genreId) counts the batch causes.
+ * A track with old years Yo and genres Go that gains delta years Yd and genres
+ * Gd contributes (Yo + Yd) x (Go + Gd) pairs after the batch and Yo x Go
+ * before it, so the delta is Yd x (Go + Gd) + Yo x Gd. Tracks the batch does
+ * not touch are never read.
+ * Input: ((trackId, source), [years..., genreIds...]) for the delta files only
+ * Output: ((year, genreId), countDelta), plus the batch's records for each
+ * track to the "index" named output, which becomes the next index generation
+ */
+public class DeltaJoinReducer extends Reducer<TrackJoinKey, JoinValue, YearGenreKey, IntWritable> {
+
+    private TrackIndex index;
+    private MultipleOutputs<YearGenreKey, IntWritable> outputs;
+    private YearGenreCounts counts;
+    private final TrackIndexRecord indexRecord = new TrackIndexRecord();
+
+    // Delta and indexed years and genres of the current track, reused across keys
+    private int[] years = new int[1];
+    private int yearCount;
+    private int[] genreIds = new int[2];
+    private int genreCount;
+    private int[] oldYears = new int[1];
+    private int oldYearCount;
+    private int[] oldGenreIds = new int[2];
+    private int oldGenreCount;
+
+    private final Consumer<TrackIndexRecord> collectOld = this::collectOld;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        index = TrackIndex.open(context.getConfiguration());
+        outputs = new MultipleOutputs<>(context);
+        counts = new YearGenreCounts(context.getConfiguration().getInt(
+                YearGenreCounts.MAX_ENTRIES_KEY, YearGenreCounts.DEFAULT_MAX_ENTRIES));
+    }
+
+    @Override
+    protected void reduce(TrackJoinKey key, Iterable<JoinValue> values, Context context)
+            throws IOException, InterruptedException {
+        yearCount = 0;
+        genreCount = 0;
+        for (JoinValue value : values) {
+            if (value.isYear()) {
+                if (yearCount == years.length) {
+                    years = Arrays.copyOf(years, yearCount * 2);
+                }
+                years[yearCount++] = value.getYear();
+            } else {
+                if (genreCount == genreIds.length) {
+                    genreIds = Arrays.copyOf(genreIds, genreCount * 2);
+                }
+                genreIds[genreCount++] = value.getGenreId();
+            }
+        }
+
+        oldYearCount = 0;
+        oldGenreCount = 0;
+        index.lookup(key.getTrackId(), collectOld);
+
+        // New years pair with every genre of the track, old years only with the new genres
+        for (int i = 0; i < yearCount; i++) {
+            for (int j = 0; j < oldGenreCount; j++) {
+                count(years[i], oldGenreIds[j], context);
+            }
+            for (int j = 0; j < genreCount; j++) {
+                count(years[i], genreIds[j], context);
+            }
+        }
+        for (int i = 0; i < oldYearCount; i++) {
+            for (int j = 0; j < genreCount; j++) {
+                count(oldYears[i], genreIds[j], context);
+            }
+        }
+
+        // Keys arrive in TrackIdWritable order, as MapFile requires
+        indexRecord.set(years, yearCount, genreIds, genreCount);
+        outputs.write(TrackIndex.INDEX_OUTPUT, key.getTrackId(), indexRecord);
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        counts.flush(context);
+        outputs.close();
+        index.close();
+    }
+
+    private void count(int year, int genreId, Context context) throws IOException, InterruptedException {
+        if (counts.add(year, genreId, 1)) {
+            counts.flush(context);
+        }
+    }
+
+    // Appends one index generation's years and genres for the current track.
+    private void collectOld(TrackIndexRecord record) {
+        for (int i = 0; i < record.yearCount(); i++) {
+            if (oldYearCount == oldYears.length) {
+                oldYears = Arrays.copyOf(oldYears, oldYearCount * 2);
+            }
+            oldYears[oldYearCount++] = record.year(i);
+        }
+        for (int i = 0; i < record.genreCount(); i++) {
+            if (oldGenreCount == oldGenreIds.length) {
+                oldGenreIds = Arrays.copyOf(oldGenreIds, oldGenreCount * 2);
+            }
+            oldGenreIds[oldGenreCount++] = record.genreId(i);
+        }
+    }
+}
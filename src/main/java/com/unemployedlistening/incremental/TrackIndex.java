@@ -0,0 +1,157 @@
+package com.unemployedlistening.incremental;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.MapFile;
+
+import com.unemployedlistening.io.TrackIdWritable;
+import com.unemployedlistening.io.TrackIndexRecord;
+
+/**
+ * Generational index of every track the incremental pipeline has seen.
+ * Each delta run writes one generation: a directory of MapFiles
+ * (index-r-NNNNN, one per reducer) keyed by TrackIdWritable, holding the
+ * years and genre IDs that batch contributed. Tracks are partitioned with
+ * TrackIdWritable.HashPartitioner, so a lookup opens one MapFile per
+ * generation and binary-searches its index. Generations are never
+ * rewritten; a track's full state is the union of its records across them.
+ */
+public class TrackIndex implements Closeable {
+
+    // Comma-separated generation directories, oldest first, passed to tasks by the driver
+    public static final String GENERATIONS_KEY = "incremental.index.generations";
+
+    // Named output the delta job writes index MapFiles to
+    public static final String INDEX_OUTPUT = "index";
+
+    // Reducer count of a generation, written by the driver once the generation is complete
+    private static final String PARTITIONS_FILE = "_PARTITIONS";
+    private static final String GENERATION_PREFIX = "gen-";
+
+    private final List<MapFile.Reader[]> generations = new ArrayList<>();
+    private final TrackIdWritable.HashPartitioner<TrackIndexRecord> partitioner =
+            new TrackIdWritable.HashPartitioner<>();
+    private final TrackIndexRecord record = new TrackIndexRecord();
+
+    /**
+     * Opens the generations listed under GENERATIONS_KEY in the configuration.
+     *
+     * @param conf Task configuration
+     * @return The opened index; empty if no generations are listed
+     * @throws IOException if a generation cannot be opened
+     */
+    public static TrackIndex open(Configuration conf) throws IOException {
+        TrackIndex index = new TrackIndex();
+        for (String dir : conf.getTrimmedStrings(GENERATIONS_KEY)) {
+            index.generations.add(openGeneration(new Path(dir), conf));
+        }
+        return index;
+    }
+
+    // One reader slot per partition; partitions whose reducer wrote no tracks stay null.
+    private static MapFile.Reader[] openGeneration(Path dir, Configuration conf) throws IOException {
+        FileSystem fs = dir.getFileSystem(conf);
+        MapFile.Reader[] readers = new MapFile.Reader[readPartitions(fs, dir)];
+        for (FileStatus status : fs.listStatus(dir)) {
+            String name = status.getPath().getName();
+            if (status.isDirectory() && name.startsWith(INDEX_OUTPUT + "-")) {
+                int partition = Integer.parseInt(name.substring(name.lastIndexOf('-') + 1));
+                readers[partition] = new MapFile.Reader(status.getPath(), conf);
+            }
+        }
+        return readers;
+    }
+
+    /**
+     * Passes the track's record from every generation that holds it to the
+     * visitor, oldest generation first.
+     *
+     * @return Number of generations that held the track
+     */
+    public int lookup(TrackIdWritable trackId, Consumer<TrackIndexRecord> visitor) throws IOException {
+        int found = 0;
+        for (MapFile.Reader[] readers : generations) {
+            MapFile.Reader reader = readers[partitioner.getPartition(trackId, null, readers.length)];
+            if (reader != null && reader.get(trackId, record) != null) {
+                visitor.accept(record);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (MapFile.Reader[] readers : generations) {
+            for (MapFile.Reader reader : readers) {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists the complete generations under the index root, oldest first.
+     * Generations left behind by a failed run (no _PARTITIONS file) are
+     * deleted.
+     */
+    public static List<Path> listGenerations(FileSystem fs, Path root) throws IOException {
+        List<Path> complete = new ArrayList<>();
+        if (!fs.exists(root)) {
+            return complete;
+        }
+        for (FileStatus status : fs.listStatus(root)) {
+            Path dir = status.getPath();
+            if (!status.isDirectory() || !dir.getName().startsWith(GENERATION_PREFIX)) {
+                continue;
+            }
+            if (fs.exists(new Path(dir, PARTITIONS_FILE))) {
+                complete.add(dir);
+            } else {
+                fs.delete(dir, true);
+            }
+        }
+        // Zero-padded generation numbers sort by name
+        complete.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return complete;
+    }
+
+    // Directory for the generation after the given complete ones.
+    public static Path nextGeneration(Path root, List<Path> generations) {
+        int next = 0;
+        for (Path generation : generations) {
+            next = Math.max(next, Integer.parseInt(generation.getName().substring(GENERATION_PREFIX.length())) + 1);
+        }
+        return new Path(root, String.format("%s%05d", GENERATION_PREFIX, next));
+    }
+
+    // Marks a generation complete by recording the number of partitions it was written with.
+    public static void commitGeneration(FileSystem fs, Path dir, int partitions) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(fs.create(new Path(dir, PARTITIONS_FILE), true), StandardCharsets.UTF_8))) {
+            writer.write(Integer.toString(partitions));
+            writer.newLine();
+        }
+    }
+
+    private static int readPartitions(FileSystem fs, Path dir) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(fs.open(new Path(dir, PARTITIONS_FILE)), StandardCharsets.UTF_8))) {
+            return Integer.parseInt(reader.readLine().trim());
+        }
+    }
+}
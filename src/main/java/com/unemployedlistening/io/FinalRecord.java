@@ -0,0 +1,170 @@
+package com.unemployedlistening.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Final pipeline record: year, genre name (UTF-8 bytes), count and annual
+ * unemployment rate.
+ * writeText() renders it as year\tgenre\tcount\trate, byte-identical to
+ * String.format("%d\t%s\t%d\t%.2f", ...), straight into a reusable buffer.
+ * The rate is rounded with integer arithmetic; only rates within rounding
+ * error of a tie at the second decimal (and negative, non-finite or very large
+ * rates) go through Formatter, since Formatter rounds the shortest decimal
+ * representation of the double rather than its exact binary value. The
+ * decimal separator is always '.', which CorrelationAnalyzer relies on.
+ */
+public class FinalRecord implements Writable {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    // Rates below this are scaled by 100 exactly enough for the tie check below
+    private static final double FAST_PATH_LIMIT = 1e6;
+    // Distance from a tie (in hundredths) below which the fast path defers to Formatter
+    private static final double TIE_MARGIN = 1e-6;
+
+    private int year;
+    private byte[] genre = EMPTY;
+    private int genreLength;
+    private int count;
+    private double unemploymentRate;
+
+    // Text form of the record, reused across writeText calls
+    private byte[] text = new byte[64];
+    private int textLength;
+
+    /**
+     * Sets the record. The genre array is referenced, not copied, so callers
+     * can pass the cached bytes of a dictionary entry.
+     */
+    public void set(int year, byte[] genre, int count, double unemploymentRate) {
+        this.year = year;
+        this.genre = genre;
+        this.genreLength = genre.length;
+        this.count = count;
+        this.unemploymentRate = unemploymentRate;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getUnemploymentRate() {
+        return unemploymentRate;
+    }
+
+    /**
+     * Writes the record as year\tgenre\tcount\trate (no line terminator).
+     */
+    public void writeText(OutputStream out) throws IOException {
+        render();
+        out.write(text, 0, textLength);
+    }
+
+    private void render() {
+        textLength = 0;
+        ensureCapacity(3 * 12 + genreLength + 3);
+        appendInt(year);
+        text[textLength++] = '\t';
+        System.arraycopy(genre, 0, text, textLength, genreLength);
+        textLength += genreLength;
+        text[textLength++] = '\t';
+        appendInt(count);
+        text[textLength++] = '\t';
+        appendRate(unemploymentRate);
+    }
+
+    private void appendInt(int value) {
+        if (value == Integer.MIN_VALUE) {
+            appendAscii(Integer.toString(value));
+            return;
+        }
+        if (value < 0) {
+            text[textLength++] = '-';
+            value = -value;
+        }
+        appendDigits(value, 1);
+    }
+
+    // Writes value with at least minDigits digits, zero-padded on the left.
+    private void appendDigits(long value, int minDigits) {
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        digits = Math.max(digits, minDigits);
+        for (int i = textLength + digits - 1; i >= textLength; i--) {
+            text[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        textLength += digits;
+    }
+
+    private void appendRate(double rate) {
+        // Sign bit clear also rules out -0.0, which formats as "-0.00"
+        if (Double.doubleToRawLongBits(rate) >= 0 && rate < FAST_PATH_LIMIT) {
+            double hundredths = rate * 100;
+            double whole = Math.floor(hundredths);
+            double fraction = hundredths - whole;
+            if (Math.abs(fraction - 0.5) > TIE_MARGIN) {
+                long rounded = (long) whole + (fraction > 0.5 ? 1 : 0);
+                appendDigits(rounded / 100, 1);
+                text[textLength++] = '.';
+                appendDigits(rounded % 100, 2);
+                return;
+            }
+        }
+        appendAscii(String.format(Locale.ROOT, "%.2f", rate));
+    }
+
+    private void appendAscii(String value) {
+        ensureCapacity(textLength + value.length());
+        for (int i = 0; i < value.length(); i++) {
+            text[textLength++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (text.length < capacity) {
+            text = Arrays.copyOf(text, Math.max(capacity, text.length * 2));
+        }
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(year);
+        WritableUtils.writeVInt(out, genreLength);
+        out.write(genre, 0, genreLength);
+        out.writeInt(count);
+        out.writeDouble(unemploymentRate);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        year = in.readInt();
+        genreLength = WritableUtils.readVInt(in);
+        // Never read into an array set() may have borrowed from a dictionary
+        genre = new byte[genreLength];
+        in.readFully(genre, 0, genreLength);
+        count = in.readInt();
+        unemploymentRate = in.readDouble();
+    }
+
+    @Override
+    public String toString() {
+        render();
+        return new String(text, 0, textLength, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,64 @@
+package com.unemployedlistening.io;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * Output format for the final pipeline output: one line per FinalRecord,
+ * written with FinalRecord.writeText. Produces the same files as
+ * TextOutputFormat with the record formatted into a Text key, including the
+ * optional output compression, without building a String per record.
+ */
+public class FinalRecordOutputFormat extends FileOutputFormat<FinalRecord, NullWritable> {
+
+    @Override
+    public RecordWriter<FinalRecord, NullWritable> getRecordWriter(TaskAttemptContext context) throws IOException {
+        Configuration conf = context.getConfiguration();
+        CompressionCodec codec = null;
+        String extension = "";
+        if (getCompressOutput(context)) {
+            codec = ReflectionUtils.newInstance(getOutputCompressorClass(context, GzipCodec.class), conf);
+            extension = codec.getDefaultExtension();
+        }
+
+        Path file = getDefaultWorkFile(context, extension);
+        FileSystem fs = file.getFileSystem(conf);
+        DataOutputStream fileOut = fs.create(file, false);
+        if (codec != null) {
+            return new FinalRecordWriter(new DataOutputStream(codec.createOutputStream(fileOut)));
+        }
+        return new FinalRecordWriter(fileOut);
+    }
+
+    // Writes each record followed by a newline.
+    private static class FinalRecordWriter extends RecordWriter<FinalRecord, NullWritable> {
+
+        private final DataOutputStream out;
+
+        FinalRecordWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public synchronized void write(FinalRecord record, NullWritable value) throws IOException {
+            record.writeText(out);
+            out.write('\n');
+        }
+
+        @Override
+        public synchronized void close(TaskAttemptContext context) throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.unemployedlistening.io;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.LineRecordReader;
+
+import com.unemployedlistening.util.FieldTokenizer;
+
+/**
+ * Input format for the tagtraum genre annotations file (TRACKID\tGENRE).
+ * Hands mappers typed (trackId, genre) records; comment lines and malformed
+ * lines are skipped by the reader.
+ */
+public class GenreInputFormat extends FileInputFormat<Text, Text> {
+
+    @Override
+    public RecordReader<Text, Text> createRecordReader(InputSplit split, TaskAttemptContext context) {
+        return new GenreRecordReader();
+    }
+
+    @Override
+    protected boolean isSplitable(JobContext context, Path file) {
+        CompressionCodec codec = new CompressionCodecFactory(context.getConfiguration()).getCodec(file);
+        return codec == null || codec instanceof SplittableCompressionCodec;
+    }
+
+    // Parses annotation lines into (trackId, genre) pairs on top of a LineRecordReader.
+    public static class GenreRecordReader extends RecordReader<Text, Text> {
+
+        private final LineRecordReader lineReader = new LineRecordReader();
+        private final FieldTokenizer tokenizer = new FieldTokenizer("\t", 2);
+
+        private Text trackId = new Text();
+        private Text genre = new Text();
+
+        @Override
+        public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+            lineReader.initialize(split, context);
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException {
+            while (lineReader.nextKeyValue()) {
+                // Tab-delimited: TRACKID\tGENRE; skip comments
+                if (tokenizer.tokenize(lineReader.getCurrentValue()) < 2 || tokenizer.lineStartsWith('#')) {
+                    continue;
+                }
+                if (tokenizer.isEmpty(0) || tokenizer.isEmpty(1)) {
+                    continue;
+                }
+
+                tokenizer.copyTo(0, trackId);
+                tokenizer.copyTo(1, genre);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Text getCurrentKey() {
+            return trackId;
+        }
+
+        @Override
+        public Text getCurrentValue() {
+            return genre;
+        }
+
+        @Override
+        public float getProgress() throws IOException {
+            return lineReader.getProgress();
+        }
+
+        @Override
+        public void close() throws IOException {
+            lineReader.close();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.unemployedlistening.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+/**
+ * Composite (genre, year) key for the correlation stage.
+ * Sorting on genre ID first and year second, with partitioning and grouping
+ * on the genre ID only, delivers each genre's counts to one reduce call in
+ * year order (secondary sort).
+ */
+public class GenreYearKey implements WritableComparable<GenreYearKey> {
+
+    private int genreId;
+    private int year;
+
+    public GenreYearKey() {
+    }
+
+    public GenreYearKey(int genreId, int year) {
+        set(genreId, year);
+    }
+
+    public void set(int genreId, int year) {
+        this.genreId = genreId;
+        this.year = year;
+    }
+
+    public int getGenreId() {
+        return genreId;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(genreId);
+        out.writeInt(year);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        genreId = in.readInt();
+        year = in.readInt();
+    }
+
+    @Override
+    public int compareTo(GenreYearKey other) {
+        int cmp = Integer.compare(genreId, other.genreId);
+        return cmp != 0 ? cmp : Integer.compare(year, other.year);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof GenreYearKey)) {
+            return false;
+        }
+        GenreYearKey other = (GenreYearKey) o;
+        return genreId == other.genreId && year == other.year;
+    }
+
+    @Override
+    public int hashCode() {
+        return genreId * 163 + year;
+    }
+
+    @Override
+    public String toString() {
+        return genreId + "\t" + year;
+    }
+
+    // Compares serialized keys directly on the genre ID and year ints.
+    public static class Comparator extends WritableComparator {
+        public Comparator() {
+            super(GenreYearKey.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            int cmp = Integer.compare(readInt(b1, s1), readInt(b2, s2));
+            return cmp != 0 ? cmp : Integer.compare(readInt(b1, s1 + 4), readInt(b2, s2 + 4));
+        }
+    }
+
+    // Groups keys by genre ID only, so one reduce call sees all years of a genre.
+    public static class GroupingComparator extends WritableComparator {
+        public GroupingComparator() {
+            super(GenreYearKey.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            return Integer.compare(readInt(b1, s1), readInt(b2, s2));
+        }
+    }
+
+    // Partitions by genre ID only, so all years of a genre go to the same reducer.
+    public static class GenrePartitioner<V> extends Partitioner<GenreYearKey, V> {
+        @Override
+        public int getPartition(GenreYearKey key, V value, int numPartitions) {
+            return (key.getGenreId() & Integer.MAX_VALUE) % numPartitions;
+        }
+    }
+
+    static {
+        WritableComparator.define(GenreYearKey.class, new Comparator());
+    }
+}
@@ -0,0 +1,61 @@
+package com.unemployedlistening.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+
+/**
+ * Tagged-union value for the Job 1 reduce-side join: either a release year
+ * from the MSD file or a genre (as a GenreDictionary ID) from the annotations
+ * file.
+ * Serialized as a one-byte tag followed by an int.
+ */
+public class JoinValue implements Writable {
+
+    private static final byte TAG_YEAR = 0;
+    private static final byte TAG_GENRE = 1;
+
+    private byte tag;
+    private int value;
+
+    public void setYear(int year) {
+        this.tag = TAG_YEAR;
+        this.value = year;
+    }
+
+    public void setGenreId(int genreId) {
+        this.tag = TAG_GENRE;
+        this.value = genreId;
+    }
+
+    public boolean isYear() {
+        return tag == TAG_YEAR;
+    }
+
+    public int getYear() {
+        return value;
+    }
+
+    public int getGenreId() {
+        return value;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(tag);
+        out.writeInt(value);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        tag = in.readByte();
+        value = in.readInt();
+    }
+
+    @Override
+    public String toString() {
+        return (isYear() ? "year:" : "genre:") + value;
+    }
+}
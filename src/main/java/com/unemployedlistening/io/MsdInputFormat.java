@@ -0,0 +1,94 @@
+package com.unemployedlistening.io;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.LineRecordReader;
+
+import com.unemployedlistening.util.FieldTokenizer;
+
+/**
+ * Input format for the Million Song Dataset file
+ * (YEAR<SEP>TRACKID<SEP>ARTIST<SEP>SONG).
+ * Hands mappers typed (trackId, year) records; the artist and song fields are
+ * never scanned, and malformed lines are skipped by the reader.
+ */
+public class MsdInputFormat extends FileInputFormat<Text, IntWritable> {
+
+    @Override
+    public RecordReader<Text, IntWritable> createRecordReader(InputSplit split, TaskAttemptContext context) {
+        return new MsdRecordReader();
+    }
+
+    @Override
+    protected boolean isSplitable(JobContext context, Path file) {
+        CompressionCodec codec = new CompressionCodecFactory(context.getConfiguration()).getCodec(file);
+        return codec == null || codec instanceof SplittableCompressionCodec;
+    }
+
+    // Parses MSD lines into (trackId, year) pairs on top of a LineRecordReader.
+    public static class MsdRecordReader extends RecordReader<Text, IntWritable> {
+
+        private final LineRecordReader lineReader = new LineRecordReader();
+        // Only the year and track ID fields are needed
+        private final FieldTokenizer tokenizer = new FieldTokenizer("<SEP>", 2);
+
+        private Text trackId = new Text();
+        private IntWritable year = new IntWritable();
+
+        @Override
+        public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+            lineReader.initialize(split, context);
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException {
+            while (lineReader.nextKeyValue()) {
+                // Expected format: YEAR<SEP>TRACKID<SEP>ARTIST<SEP>SONG
+                if (tokenizer.tokenize(lineReader.getCurrentValue()) < 2 || tokenizer.isEmpty(1)) {
+                    continue;
+                }
+
+                try {
+                    year.set(tokenizer.parseInt(0));
+                } catch (NumberFormatException e) {
+                    // Skip malformed lines
+                    continue;
+                }
+                tokenizer.copyTo(1, trackId);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Text getCurrentKey() {
+            return trackId;
+        }
+
+        @Override
+        public IntWritable getCurrentValue() {
+            return year;
+        }
+
+        @Override
+        public float getProgress() throws IOException {
+            return lineReader.getProgress();
+        }
+
+        @Override
+        public void close() throws IOException {
+            lineReader.close();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.unemployedlistening.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+/**
+ * Million Song Dataset track ID packed into two longs.
+ * Track IDs are "TR" followed by 16 characters from [0-9A-Z]; each half of
+ * those 16 characters is stored as an 8-digit base-36 number. Digits are
+ * numbered in ASCII order, so packed IDs sort exactly like their text.
+ *
+ * Serialized form is a format byte followed by either the two longs (17 bytes
+ * in total) or, for IDs that do not match the format, the ID as Text. Packed
+ * IDs sort before text IDs; the registered raw Comparator never deserializes.
+ */
+public class TrackIdWritable implements WritableComparable<TrackIdWritable> {
+
+    private static final byte FORMAT_PACKED = 0;
+    private static final byte FORMAT_TEXT = 1;
+
+    private static final int PREFIX_LENGTH = 2;
+    private static final int HALF_LENGTH = 8;
+    public static final int PACKED_ID_LENGTH = PREFIX_LENGTH + 2 * HALF_LENGTH;
+
+    // Serialized size of a packed ID: format byte + two longs
+    public static final int PACKED_SERIALIZED_LENGTH = 17;
+
+    private boolean packed;
+    private long high;
+    private long low;
+    private final Text text = new Text();
+
+    public TrackIdWritable() {
+    }
+
+    public TrackIdWritable(String trackId) {
+        set(new Text(trackId));
+    }
+
+    public void set(Text trackId) {
+        set(trackId.getBytes(), 0, trackId.getLength());
+    }
+
+    // Sets the ID from the UTF-8 bytes in bytes[start, start + length), packing it when possible.
+    public void set(byte[] bytes, int start, int length) {
+        if (length == PACKED_ID_LENGTH && bytes[start] == 'T' && bytes[start + 1] == 'R') {
+            long h = pack(bytes, start + PREFIX_LENGTH);
+            long l = pack(bytes, start + PREFIX_LENGTH + HALF_LENGTH);
+            if (h >= 0 && l >= 0) {
+                packed = true;
+                high = h;
+                low = l;
+                return;
+            }
+        }
+        packed = false;
+        text.set(bytes, start, length);
+    }
+
+    public void set(TrackIdWritable other) {
+        packed = other.packed;
+        high = other.high;
+        low = other.low;
+        if (!packed) {
+            text.set(other.text);
+        }
+    }
+
+    public boolean isPacked() {
+        return packed;
+    }
+
+    // Base-36 value of 8 ID characters, or -1 if any character is outside [0-9A-Z].
+    private static long pack(byte[] bytes, int start) {
+        long value = 0;
+        for (int i = start; i < start + HALF_LENGTH; i++) {
+            int digit = digit(bytes[i]);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * 36 + digit;
+        }
+        return value;
+    }
+
+    private static int digit(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'A' && b <= 'Z') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static void unpack(long value, char[] chars, int start) {
+        for (int i = start + HALF_LENGTH - 1; i >= start; i--) {
+            int digit = (int) (value % 36);
+            chars[i] = (char) (digit < 10 ? '0' + digit : 'A' + digit - 10);
+            value /= 36;
+        }
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        if (packed) {
+            out.writeByte(FORMAT_PACKED);
+            out.writeLong(high);
+            out.writeLong(low);
+        } else {
+            out.writeByte(FORMAT_TEXT);
+            text.write(out);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        packed = in.readByte() == FORMAT_PACKED;
+        if (packed) {
+            high = in.readLong();
+            low = in.readLong();
+        } else {
+            text.readFields(in);
+        }
+    }
+
+    @Override
+    public int compareTo(TrackIdWritable other) {
+        if (packed != other.packed) {
+            return packed ? -1 : 1;
+        }
+        if (!packed) {
+            return text.compareTo(other.text);
+        }
+        int cmp = Long.compare(high, other.high);
+        return cmp != 0 ? cmp : Long.compare(low, other.low);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof TrackIdWritable)) {
+            return false;
+        }
+        TrackIdWritable other = (TrackIdWritable) o;
+        if (packed != other.packed) {
+            return false;
+        }
+        return packed ? high == other.high && low == other.low : text.equals(other.text);
+    }
+
+    @Override
+    public int hashCode() {
+        if (!packed) {
+            return text.hashCode();
+        }
+        // Fold both halves and mix, so partitions spread evenly on the low bits
+        long h = high * 0x9e3779b97f4a7c15L + low;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    @Override
+    public String toString() {
+        if (!packed) {
+            return text.toString();
+        }
+        char[] chars = new char[PACKED_ID_LENGTH];
+        chars[0] = 'T';
+        chars[1] = 'R';
+        unpack(high, chars, PREFIX_LENGTH);
+        unpack(low, chars, PREFIX_LENGTH + HALF_LENGTH);
+        return new String(chars);
+    }
+
+    /**
+     * Returns the serialized length of the track ID starting at bytes[start].
+     */
+    public static int serializedLength(byte[] bytes, int start) throws IOException {
+        if (bytes[start] == FORMAT_PACKED) {
+            return PACKED_SERIALIZED_LENGTH;
+        }
+        return 1 + WritableUtils.decodeVIntSize(bytes[start + 1]) + WritableComparator.readVInt(bytes, start + 1);
+    }
+
+    /**
+     * Compares two serialized track IDs: two packed IDs by their longs, two
+     * text IDs by their bytes, and packed before text otherwise.
+     */
+    public static int compareRaw(byte[] b1, int s1, byte[] b2, int s2) throws IOException {
+        byte f1 = b1[s1];
+        byte f2 = b2[s2];
+        if (f1 != f2) {
+            return f1 == FORMAT_PACKED ? -1 : 1;
+        }
+        if (f1 == FORMAT_PACKED) {
+            int cmp = Long.compare(WritableComparator.readLong(b1, s1 + 1), WritableComparator.readLong(b2, s2 + 1));
+            return cmp != 0 ? cmp
+                    : Long.compare(WritableComparator.readLong(b1, s1 + 9), WritableComparator.readLong(b2, s2 + 9));
+        }
+        int n1 = WritableUtils.decodeVIntSize(b1[s1 + 1]);
+        int n2 = WritableUtils.decodeVIntSize(b2[s2 + 1]);
+        return WritableComparator.compareBytes(b1, s1 + 1 + n1, WritableComparator.readVInt(b1, s1 + 1),
+                b2, s2 + 1 + n2, WritableComparator.readVInt(b2, s2 + 1));
+    }
+
+    // Compares serialized track IDs without deserializing them.
+    public static class Comparator extends WritableComparator {
+        public Comparator() {
+            super(TrackIdWritable.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            try {
+                return compareRaw(b1, s1, b2, s2);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+
+    // Partitions by the hash of the packed form.
+    public static class HashPartitioner<V> extends Partitioner<TrackIdWritable, V> {
+        @Override
+        public int getPartition(TrackIdWritable key, V value, int numPartitions) {
+            return (key.hashCode() & Integer.MAX_VALUE) % numPartitions;
+        }
+    }
+
+    static {
+        WritableComparator.define(TrackIdWritable.class, new Comparator());
+    }
+}
@@ -0,0 +1,83 @@
+package com.unemployedlistening.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Value of the incremental track index: the release years (post-1948 only)
+ * and genre IDs one generation contributed for a track. Either list may be
+ * empty, since a track's MSD record and annotations can arrive in different
+ * batches.
+ * Serialized as two vint-length lists of vints.
+ */
+public class TrackIndexRecord implements Writable {
+
+    private int[] years = new int[1];
+    private int yearCount;
+    private int[] genreIds = new int[2];
+    private int genreCount;
+
+    public void set(int[] years, int yearCount, int[] genreIds, int genreCount) {
+        this.years = Arrays.copyOf(years, Math.max(1, yearCount));
+        this.yearCount = yearCount;
+        this.genreIds = Arrays.copyOf(genreIds, Math.max(1, genreCount));
+        this.genreCount = genreCount;
+    }
+
+    public int yearCount() {
+        return yearCount;
+    }
+
+    public int year(int i) {
+        return years[i];
+    }
+
+    public int genreCount() {
+        return genreCount;
+    }
+
+    public int genreId(int i) {
+        return genreIds[i];
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVInt(out, yearCount);
+        for (int i = 0; i < yearCount; i++) {
+            WritableUtils.writeVInt(out, years[i]);
+        }
+        WritableUtils.writeVInt(out, genreCount);
+        for (int i = 0; i < genreCount; i++) {
+            WritableUtils.writeVInt(out, genreIds[i]);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        yearCount = WritableUtils.readVInt(in);
+        if (years.length < yearCount) {
+            years = new int[yearCount];
+        }
+        for (int i = 0; i < yearCount; i++) {
+            years[i] = WritableUtils.readVInt(in);
+        }
+        genreCount = WritableUtils.readVInt(in);
+        if (genreIds.length < genreCount) {
+            genreIds = new int[genreCount];
+        }
+        for (int i = 0; i < genreCount; i++) {
+            genreIds[i] = WritableUtils.readVInt(in);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(Arrays.copyOf(years, yearCount)) + "\t"
+                + Arrays.toString(Arrays.copyOf(genreIds, genreCount));
+    }
+}
@@ -0,0 +1,122 @@
+package com.unemployedlistening.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+/**
+ * Composite (trackId, source) key for the Job 1 reduce-side join.
+ * Keys sort by track ID and then by source, so for every track the MSD record
+ * reaches the reducer before its genre annotations. Partitioning and grouping
+ * use the track ID only, so both sources still meet in one reduce call.
+ * The track ID is a TrackIdWritable, so for well-formed IDs the whole key is a
+ * fixed 18 bytes.
+ */
+public class TrackJoinKey implements WritableComparable<TrackJoinKey> {
+
+    // Source tags, in the order records should reach the reducer
+    public static final byte SOURCE_MSD = 0;
+    public static final byte SOURCE_GENRE = 1;
+
+    private TrackIdWritable trackId = new TrackIdWritable();
+    private byte source;
+
+    public void set(Text trackId, byte source) {
+        this.trackId.set(trackId);
+        this.source = source;
+    }
+
+    public TrackIdWritable getTrackId() {
+        return trackId;
+    }
+
+    public byte getSource() {
+        return source;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        trackId.write(out);
+        out.writeByte(source);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        trackId.readFields(in);
+        source = in.readByte();
+    }
+
+    @Override
+    public int compareTo(TrackJoinKey other) {
+        int cmp = trackId.compareTo(other.trackId);
+        return cmp != 0 ? cmp : Byte.compare(source, other.source);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof TrackJoinKey)) {
+            return false;
+        }
+        TrackJoinKey other = (TrackJoinKey) o;
+        return source == other.source && trackId.equals(other.trackId);
+    }
+
+    @Override
+    public int hashCode() {
+        return trackId.hashCode() * 31 + source;
+    }
+
+    @Override
+    public String toString() {
+        return trackId + "\t" + source;
+    }
+
+    // Sorts serialized keys by track ID, then by source tag.
+    public static class Comparator extends WritableComparator {
+        public Comparator() {
+            super(TrackJoinKey.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            try {
+                // The source tag is the last byte of the key
+                int cmp = TrackIdWritable.compareRaw(b1, s1, b2, s2);
+                return cmp != 0 ? cmp : Byte.compare(b1[s1 + l1 - 1], b2[s2 + l2 - 1]);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+
+    // Groups serialized keys by track ID only, ignoring the source tag.
+    public static class GroupingComparator extends WritableComparator {
+        public GroupingComparator() {
+            super(TrackJoinKey.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            // The source tag is the last byte of the key; grouping only needs equality
+            // of the serialized track ID, which sorts adjacently under Comparator
+            return compareBytes(b1, s1, l1 - 1, b2, s2, l2 - 1);
+        }
+    }
+
+    // Partitions by the packed track ID hash only, so both sources of a track reach the same reducer.
+    public static class TrackIdPartitioner<V> extends Partitioner<TrackJoinKey, V> {
+        @Override
+        public int getPartition(TrackJoinKey key, V value, int numPartitions) {
+            return (key.getTrackId().hashCode() & Integer.MAX_VALUE) % numPartitions;
+        }
+    }
+
+    static {
+        WritableComparator.define(TrackJoinKey.class, new Comparator());
+    }
+}
@@ -0,0 +1,97 @@
+package com.unemployedlistening.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ * Composite (year, genre) key for genre counting.
+ * The genre is stored as its ID in the GenreDictionary, so the key always
+ * serializes to 8 bytes (year, genre ID) and sorts without deserialization
+ * through the registered raw Comparator.
+ */
+public class YearGenreKey implements WritableComparable<YearGenreKey> {
+
+    // Serialized size: int year + int genre ID
+    public static final int SERIALIZED_LENGTH = 8;
+
+    private int year;
+    private int genreId;
+
+    public YearGenreKey() {
+    }
+
+    public YearGenreKey(int year, int genreId) {
+        set(year, genreId);
+    }
+
+    public void set(int year, int genreId) {
+        this.year = year;
+        this.genreId = genreId;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getGenreId() {
+        return genreId;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(year);
+        out.writeInt(genreId);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        year = in.readInt();
+        genreId = in.readInt();
+    }
+
+    @Override
+    public int compareTo(YearGenreKey other) {
+        int cmp = Integer.compare(year, other.year);
+        return cmp != 0 ? cmp : Integer.compare(genreId, other.genreId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof YearGenreKey)) {
+            return false;
+        }
+        YearGenreKey other = (YearGenreKey) o;
+        return year == other.year && genreId == other.genreId;
+    }
+
+    @Override
+    public int hashCode() {
+        return year * 163 + genreId;
+    }
+
+    @Override
+    public String toString() {
+        return year + "\t" + genreId;
+    }
+
+    // Compares serialized keys directly on the year and genre ID ints.
+    public static class Comparator extends WritableComparator {
+        public Comparator() {
+            super(YearGenreKey.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            int cmp = Integer.compare(readInt(b1, s1), readInt(b2, s2));
+            return cmp != 0 ? cmp : Integer.compare(readInt(b1, s1 + 4), readInt(b2, s2 + 4));
+        }
+    }
+
+    static {
+        WritableComparator.define(YearGenreKey.class, new Comparator());
+    }
+}
@@ -0,0 +1,68 @@
+package com.unemployedlistening.job1;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import com.unemployedlistening.io.YearGenreKey;
+import com.unemployedlistening.util.GenreAnnotationTable;
+import com.unemployedlistening.util.GenreDictionary;
+import com.unemployedlistening.util.UnemploymentLoader;
+
+/**
+ * Map-only alternative to MsdMapper/GenreMapper/JoinReducer for when the genre
+ * annotations file is small enough to broadcast.
+ * Loads the genre file from the distributed cache into a GenreAnnotationTable
+ * bound to the genre dictionary during setup and joins each MSD record against
+ * it in memory.
+ * Input: (trackId, year) records from MsdInputFormat
+ * Output: ((year, genreId), null) for each successful join
+ */
+public class BroadcastJoinMapper extends Mapper<Text, IntWritable, YearGenreKey, NullWritable> {
+
+    // Symlink name of the genre file in the distributed cache
+    public static final String GENRE_CACHE_LINK = "genres.cache";
+
+    private GenreAnnotationTable genreTable;
+    private int[] genreIds;
+    private YearGenreKey outputKey = new YearGenreKey();
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        genreTable = loadGenreTable(context);
+        genreIds = new int[genreTable.maxGenreCount()];
+    }
+
+    @Override
+    protected void map(Text trackId, IntWritable year, Context context) throws IOException, InterruptedException {
+        // Filter out songs from before we have unemployment data
+        if (year.get() < UnemploymentLoader.EARLIEST_YEAR) {
+            return;
+        }
+
+        // Emit one record per genre annotated for this track
+        int count = genreTable.lookup(trackId, genreIds);
+        for (int i = 0; i < count; i++) {
+            outputKey.set(year.get(), genreIds[i]);
+            context.write(outputKey, NullWritable.get());
+        }
+    }
+
+    /**
+     * Loads the broadcast genre table and the genre dictionary from the
+     * distributed cache, with the table bound to the dictionary's IDs.
+     * Shared with the fused pipeline's mapper, which joins the same way.
+     *
+     * @param context Task context
+     * @return The genre table, yielding dictionary IDs
+     * @throws IOException if either file is missing from the cache or cannot be read
+     */
+    public static GenreAnnotationTable loadGenreTable(JobContext context) throws IOException {
+        GenreDictionary dictionary = GenreDictionary.loadFromCache(GenreDictionary.CACHE_LINK, context);
+        return GenreAnnotationTable.loadFromCache(GENRE_CACHE_LINK, context).withDictionary(dictionary);
+    }
+}
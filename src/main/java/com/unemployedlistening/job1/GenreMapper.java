@@ -2,47 +2,59 @@ package com.unemployedlistening.job1;
 
 import java.io.IOException;
 
-import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.Mapper;
 
+import com.unemployedlistening.io.JoinValue;
+import com.unemployedlistening.io.TrackJoinKey;
+import com.unemployedlistening.util.GenreDictionary;
+import com.unemployedlistening.util.TrackIdBloomFilter;
+
 /**
  * Mapper for the Genre annotations file.
- * Parses the genre format (TRACKID\tGENRE) and emits (trackId, "GENRE|genre").
+ * Receives typed (trackId, genre) records from GenreInputFormat and emits
+ * ((trackId, GENRE), genreId), using the GenreDictionary from the distributed
+ * cache.
+ * Drops annotations whose track the Bloom filter of post-1948 MSD track IDs
+ * shows cannot join.
  */
-public class GenreMapper extends Mapper<LongWritable, Text, Text, Text> {
+public class GenreMapper extends Mapper<Text, Text, TrackJoinKey, JoinValue> {
     
-    private static final String SOURCE_TAG = "GENRE|";
+    // Symlink name of the post-1948 MSD track ID Bloom filter in the distributed cache
+    public static final String MSD_FILTER_LINK = "msd_tracks.bloom";
     
-    private Text trackIdKey = new Text();
-    private Text genreValue = new Text();
+    private TrackJoinKey trackIdKey = new TrackJoinKey();
+    private JoinValue genreValue = new JoinValue();
+    private GenreDictionary dictionary;
+    private TrackIdBloomFilter msdTracks;
+    private Counter prunedCounter;
     
     @Override
-    protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
-        String line = value.toString().trim();
-        
-        if (line.isEmpty() || line.startsWith("#")) {
-            return;
-        }
-        
-        // Tab-delimited: TRACKID\tGENRE
-        String[] parts = line.split("\t");
+    protected void setup(Context context) throws IOException, InterruptedException {
+        dictionary = GenreDictionary.loadFromCache(GenreDictionary.CACHE_LINK, context);
         
-        if (parts.length < 2) {
+        // Pruning is optional; no filter in the cache means every annotation is shuffled
+        msdTracks = TrackIdBloomFilter.loadFromCache(MSD_FILTER_LINK, context);
+        prunedCounter = context.getCounter(JoinCounters.GENRE_PRUNED_BY_BLOOM);
+    }
+    
+    @Override
+    protected void map(Text trackId, Text genre, Context context) throws IOException, InterruptedException {
+        // Skip annotations for tracks that are definitely not in the MSD year range
+        if (msdTracks != null && !msdTracks.mightContain(trackId)) {
+            prunedCounter.increment(1);
             return;
         }
         
-        String trackId = parts[0].trim();
-        String genre = parts[1].trim();
-        
-        if (trackId.isEmpty() || genre.isEmpty()) {
+        int genreId = dictionary.idOf(genre);
+        if (genreId < 0) {
             return;
         }
         
-        trackIdKey.set(trackId);
-        genreValue.set(SOURCE_TAG + genre);
+        trackIdKey.set(trackId, TrackJoinKey.SOURCE_GENRE);
+        genreValue.setGenreId(genreId);
         
         context.write(trackIdKey, genreValue);
     }
 }
-
@@ -0,0 +1,11 @@
+package com.unemployedlistening.job1;
+
+/**
+ * Counters reported by the Job 1 mappers.
+ */
+public enum JoinCounters {
+    // MSD records dropped because the annotated-tracks filter rules out a genre
+    MSD_PRUNED_BY_BLOOM,
+    // Genre records dropped because the MSD filter rules out a post-1948 year
+    GENRE_PRUNED_BY_BLOOM
+}
@@ -1,54 +1,52 @@
 package com.unemployedlistening.job1;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 
+import com.unemployedlistening.io.JoinValue;
+import com.unemployedlistening.io.TrackJoinKey;
+import com.unemployedlistening.io.YearGenreKey;
+
 /**
  * Reducer that performs a reduce-side join between MSD data and genre annotations.
- * Input: (trackId, [list of "MSD|year" and "GENRE|genre" values])
- * Output: (year\tgenre, null) for each successful join
+ * The secondary sort on TrackJoinKey delivers a track's MSD years before its
+ * genres, so genres are streamed straight to the output without buffering.
+ * Input: ((trackId, source), [years..., genreIds...])
+ * Output: ((year, genreId), null) for each successful join
  */
-public class JoinReducer extends Reducer<Text, Text, Text, NullWritable> {
-    
-    private static final String MSD_TAG = "MSD|";
-    private static final String GENRE_TAG = "GENRE|";
-    
-    private Text outputKey = new Text();
-    
+public class JoinReducer extends Reducer<TrackJoinKey, JoinValue, YearGenreKey, NullWritable> {
+
+    private YearGenreKey outputKey = new YearGenreKey();
+    // Years seen for the current track (typically exactly one), reused across keys
+    private int[] years = new int[1];
+
     @Override
-    protected void reduce(Text key, Iterable<Text> values, Context context) throws IOException, InterruptedException {
-        List<String> years = new ArrayList<>();
-        List<String> genres = new ArrayList<>();
-        
-        // Separate MSD records (years) from genre records
-        for (Text value : values) {
-            String val = value.toString();
-            
-            if (val.startsWith(MSD_TAG)) {
-                years.add(val.substring(MSD_TAG.length()));
-            } else if (val.startsWith(GENRE_TAG)) {
-                genres.add(val.substring(GENRE_TAG.length()));
+    protected void reduce(TrackJoinKey key, Iterable<JoinValue> values, Context context)
+            throws IOException, InterruptedException {
+        int yearCount = 0;
+
+        for (JoinValue value : values) {
+            if (value.isYear()) {
+                if (yearCount == years.length) {
+                    years = Arrays.copyOf(years, yearCount * 2);
+                }
+                years[yearCount++] = value.getYear();
+                continue;
             }
-        }
-        
-        // Only emit if we have both year data and genre data for this track
-        if (years.isEmpty() || genres.isEmpty()) {
-            return;
-        }
-        
-        // Emit all combinations of year and genre for this track
-        // (typically there should be one year per track, but could have multiple genres)
-        for (String year : years) {
-            for (String genre : genres) {
-                outputKey.set(year + "\t" + genre);
+
+            // Genres sort after years, so no years by now means the track has no MSD record
+            if (yearCount == 0) {
+                return;
+            }
+
+            // Emit this genre with every year of the track
+            for (int i = 0; i < yearCount; i++) {
+                outputKey.set(years[i], value.getGenreId());
                 context.write(outputKey, NullWritable.get());
             }
         }
     }
 }
-
@@ -2,62 +2,56 @@ package com.unemployedlistening.job1;
 
 import java.io.IOException;
 
-import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.Mapper;
 
+import com.unemployedlistening.io.JoinValue;
+import com.unemployedlistening.io.TrackJoinKey;
+import com.unemployedlistening.util.TrackIdBloomFilter;
 import com.unemployedlistening.util.UnemploymentLoader;
 
 /**
  * Mapper for the Million Song Dataset file.
- * Parses the MSD format (YEAR<SEP>TRACKID<SEP>ARTIST<SEP>SONG) and emits
- * (trackId, "MSD|year").
- * Filters out songs from before 1948 (earliest unemployment data).
+ * Receives typed (trackId, year) records from MsdInputFormat and emits
+ * ((trackId, MSD), year).
+ * Filters out songs from before 1948 (earliest unemployment data), and tracks
+ * that the Bloom filter of annotated track IDs shows have no genre.
  */
-public class MsdMapper extends Mapper<LongWritable, Text, Text, Text> {
+public class MsdMapper extends Mapper<Text, IntWritable, TrackJoinKey, JoinValue> {
 
-    private static final String DELIMITER = "<SEP>";
-    private static final String SOURCE_TAG = "MSD|";
+    // Symlink name of the annotated track ID Bloom filter in the distributed cache
+    public static final String ANNOTATED_FILTER_LINK = "annotated_tracks.bloom";
 
-    private Text trackIdKey = new Text();
-    private Text yearValue = new Text();
+    private TrackJoinKey trackIdKey = new TrackJoinKey();
+    private JoinValue yearValue = new JoinValue();
+    private TrackIdBloomFilter annotatedTracks;
+    private Counter prunedCounter;
 
     @Override
-    protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
-        String line = value.toString().trim();
+    protected void setup(Context context) throws IOException, InterruptedException {
+        // Pruning is optional; no filter in the cache means every track is shuffled
+        annotatedTracks = TrackIdBloomFilter.loadFromCache(ANNOTATED_FILTER_LINK, context);
+        prunedCounter = context.getCounter(JoinCounters.MSD_PRUNED_BY_BLOOM);
+    }
 
-        if (line.isEmpty()) {
+    @Override
+    protected void map(Text trackId, IntWritable year, Context context) throws IOException, InterruptedException {
+        // Filter out songs from before we have unemployment data
+        if (year.get() < UnemploymentLoader.EARLIEST_YEAR) {
             return;
         }
 
-        String[] parts = line.split(DELIMITER);
-
-        // Expected format: YEAR<SEP>TRACKID<SEP>ARTIST<SEP>SONG
-        if (parts.length < 2) {
+        // Skip tracks that definitely have no genre annotation
+        if (annotatedTracks != null && !annotatedTracks.mightContain(trackId)) {
+            prunedCounter.increment(1);
             return;
         }
 
-        try {
-            int year = Integer.parseInt(parts[0].trim());
-            String trackId = parts[1].trim();
-
-            // Filter out songs from before we have unemployment data
-            if (year < UnemploymentLoader.EARLIEST_YEAR) {
-                return;
-            }
-
-            if (trackId.isEmpty()) {
-                return;
-            }
+        trackIdKey.set(trackId, TrackJoinKey.SOURCE_MSD);
+        yearValue.setYear(year.get());
 
-            trackIdKey.set(trackId);
-            yearValue.set(SOURCE_TAG + year);
-
-            context.write(trackIdKey, yearValue);
-
-        } catch (NumberFormatException e) {
-            // Skip malformed lines
-            return;
-        }
+        context.write(trackIdKey, yearValue);
     }
 }
@@ -3,44 +3,51 @@ package com.unemployedlistening.job2;
 import java.io.IOException;
 
 import org.apache.hadoop.io.IntWritable;
-import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.Mapper;
 
+import com.unemployedlistening.io.YearGenreKey;
+import com.unemployedlistening.util.YearGenreCounts;
+
 /**
  * Mapper for counting genre occurrences per year.
- * Input: year\tgenre (output from Job 1)
- * Output: (year\tgenre, 1)
+ * Reads the binary (year, genreId) records written by Job 1 directly, so no
+ * text is parsed, and aggregates them in memory (in-mapper combining) so only
+ * per-(year, genreId) totals are emitted. Totals are flushed in cleanup, or
+ * earlier if the table reaches genre.count.inmapper.max.entries.
+ * Input: ((year, genreId), null) (output from Job 1)
+ * Output: ((year, genreId), count)
  */
-public class GenreCountMapper extends Mapper<LongWritable, Text, Text, IntWritable> {
+public class GenreCountMapper extends Mapper<YearGenreKey, NullWritable, YearGenreKey, IntWritable> {
 
     private static final IntWritable ONE = new IntWritable(1);
-    private Text compositeKey = new Text();
 
-    @Override
-    protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
-        String line = value.toString().trim();
+    private YearGenreCounts counts;
 
-        if (line.isEmpty()) {
-            return;
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        int maxEntries = context.getConfiguration().getInt(YearGenreCounts.MAX_ENTRIES_KEY,
+                YearGenreCounts.DEFAULT_MAX_ENTRIES);
+        // A cap of 0 turns in-mapper combining off and leaves aggregation to the combiner
+        if (maxEntries > 0) {
+            counts = new YearGenreCounts(maxEntries);
         }
+    }
 
-        // Input format: year\tgenre
-        String[] parts = line.split("\t");
-
-        if (parts.length < 2) {
-            return;
+    @Override
+    protected void map(YearGenreKey key, NullWritable value, Context context)
+            throws IOException, InterruptedException {
+        if (counts == null) {
+            context.write(key, ONE);
+        } else if (counts.add(key.getYear(), key.getGenreId(), 1)) {
+            counts.flush(context);
         }
+    }
 
-        String year = parts[0].trim();
-        String genre = parts[1].trim();
-
-        if (year.isEmpty() || genre.isEmpty()) {
-            return;
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        if (counts != null) {
+            counts.flush(context);
         }
-
-        // Use year\tgenre as composite key
-        compositeKey.set(year + "\t" + genre);
-        context.write(compositeKey, ONE);
     }
 }
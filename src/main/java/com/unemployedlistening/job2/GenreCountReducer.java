@@ -3,30 +3,29 @@ package com.unemployedlistening.job2;
 import java.io.IOException;
 
 import org.apache.hadoop.io.IntWritable;
-import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 
+import com.unemployedlistening.io.YearGenreKey;
+
 /**
  * Reducer for counting genre occurrences per year.
- * Input: (year\tgenre, [1, 1, 1, ...])
- * Output: year\tgenre\tcount
+ * Input: ((year, genreId), [count, ...]), partial counts from the mappers
+ * Output: ((year, genreId), count)
  */
-public class GenreCountReducer extends Reducer<Text, IntWritable, Text, NullWritable> {
+public class GenreCountReducer extends Reducer<YearGenreKey, IntWritable, YearGenreKey, IntWritable> {
 
-    private Text outputKey = new Text();
+    private IntWritable count = new IntWritable();
 
     @Override
-    protected void reduce(Text key, Iterable<IntWritable> values, Context context)
+    protected void reduce(YearGenreKey key, Iterable<IntWritable> values, Context context)
             throws IOException, InterruptedException {
-        int count = 0;
+        int sum = 0;
 
         for (IntWritable value : values) {
-            count += value.get();
+            sum += value.get();
         }
 
-        // Output format: year\tgenre\tcount
-        outputKey.set(key.toString() + "\t" + count);
-        context.write(outputKey, NullWritable.get());
+        count.set(sum);
+        context.write(key, count);
     }
 }
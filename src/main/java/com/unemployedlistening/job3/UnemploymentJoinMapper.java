@@ -1,84 +1,72 @@
 package com.unemployedlistening.job3;
 
 import java.io.IOException;
-import java.net.URI;
-import java.util.Map;
 
-import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 
+import com.unemployedlistening.io.FinalRecord;
+import com.unemployedlistening.io.YearGenreKey;
+import com.unemployedlistening.util.FinalPartitions;
+import com.unemployedlistening.util.GenreDictionary;
 import com.unemployedlistening.util.UnemploymentLoader;
+import com.unemployedlistening.util.UnemploymentTable;
 
 /**
  * Mapper that joins genre count data with unemployment rates.
- * Uses a map-side join by loading unemployment data into memory during setup.
- * Input: year\tgenre\tcount (output from Job 2)
- * Output: year\tgenre\tcount\tunemployment_rate
+ * Uses a map-side join by loading unemployment data and the genre dictionary
+ * into memory during setup.
+ * Input: ((year, genreId), count) (output from Job 2)
+ * Output: (year, genre, count, unemployment_rate) records, written as text by
+ * FinalRecordOutputFormat, into year or decade directories if
+ * final.partition.by is set
  */
-public class UnemploymentJoinMapper extends Mapper<LongWritable, Text, Text, NullWritable> {
+public class UnemploymentJoinMapper extends Mapper<YearGenreKey, IntWritable, FinalRecord, NullWritable> {
 
-    private Map<Integer, Double> unemploymentData;
-    private Text outputKey = new Text();
+    private UnemploymentTable unemploymentData;
+    private GenreDictionary dictionary;
+    private FinalRecord outputKey = new FinalRecord();
+    private FinalPartitions partitions;
+    // Writes to the year or decade directory when final.partition.by is set; null otherwise
+    private MultipleOutputs<FinalRecord, NullWritable> outputs;
 
     @Override
     protected void setup(Context context) throws IOException, InterruptedException {
-        Configuration conf = context.getConfiguration();
+        // Load unemployment data and genre names from distributed cache
+        unemploymentData = UnemploymentTable.loadFromCache(UnemploymentLoader.CACHE_LINK, context);
+        dictionary = GenreDictionary.loadFromCache(GenreDictionary.CACHE_LINK, context);
 
-        // Load unemployment data from distributed cache
-        URI[] cacheFiles = context.getCacheFiles();
-        if (cacheFiles != null && cacheFiles.length > 0) {
-            Path unemploymentPath = new Path(cacheFiles[0].getPath());
-            unemploymentData = UnemploymentLoader.loadUnemploymentData(unemploymentPath, conf);
-        } else {
-            // Fall back to configuration path
-            String unemploymentPathStr = conf.get("unemployment.data.path");
-            if (unemploymentPathStr != null) {
-                unemploymentData = UnemploymentLoader.loadUnemploymentData(unemploymentPathStr, conf);
-            } else {
-                throw new IOException("Unemployment data file not found in distributed cache or configuration");
-            }
+        partitions = FinalPartitions.fromConf(context.getConfiguration());
+        if (partitions.isPartitioned()) {
+            outputs = new MultipleOutputs<>(context);
         }
     }
 
     @Override
-    protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
-        String line = value.toString().trim();
+    protected void map(YearGenreKey key, IntWritable count, Context context)
+            throws IOException, InterruptedException {
+        // Look up unemployment rate for this year
+        double unemploymentRate = unemploymentData.rate(key.getYear());
 
-        if (line.isEmpty()) {
+        if (Double.isNaN(unemploymentRate)) {
+            // Skip years without unemployment data
             return;
         }
 
-        // Input format: year\tgenre\tcount
-        String[] parts = line.split("\t");
-
-        if (parts.length < 3) {
-            return;
-        }
-
-        try {
-            int year = Integer.parseInt(parts[0].trim());
-            String genre = parts[1].trim();
-            int count = Integer.parseInt(parts[2].trim());
-
-            // Look up unemployment rate for this year
-            Double unemploymentRate = unemploymentData.get(year);
-
-            if (unemploymentRate == null) {
-                // Skip years without unemployment data
-                return;
-            }
-
-            // Output format: year\tgenre\tcount\tunemployment_rate
-            outputKey.set(String.format("%d\t%s\t%d\t%.2f", year, genre, count, unemploymentRate));
+        outputKey.set(key.getYear(), dictionary.nameBytes(key.getGenreId()), count.get(), unemploymentRate);
+        if (outputs != null) {
+            outputs.write(outputKey, NullWritable.get(), partitions.basePath(key.getYear()));
+        } else {
             context.write(outputKey, NullWritable.get());
+        }
+    }
 
-        } catch (NumberFormatException e) {
-            // Skip malformed lines
-            return;
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        if (outputs != null) {
+            outputs.close();
         }
     }
 }
@@ -0,0 +1,26 @@
+package com.unemployedlistening.job4;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import com.unemployedlistening.io.GenreYearKey;
+import com.unemployedlistening.io.YearGenreKey;
+
+/**
+ * Mapper that re-keys genre counts by genre for the correlation stage.
+ * Input: ((year, genreId), count) (output from Job 2)
+ * Output: ((genreId, year), count)
+ */
+public class CorrelationMapper extends Mapper<YearGenreKey, IntWritable, GenreYearKey, IntWritable> {
+
+    private GenreYearKey outputKey = new GenreYearKey();
+
+    @Override
+    protected void map(YearGenreKey key, IntWritable count, Context context)
+            throws IOException, InterruptedException {
+        outputKey.set(key.getGenreId(), key.getYear());
+        context.write(outputKey, count);
+    }
+}
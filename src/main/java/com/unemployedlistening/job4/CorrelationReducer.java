@@ -0,0 +1,99 @@
+package com.unemployedlistening.job4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import com.unemployedlistening.analysis.CorrelationAnalyzer;
+import com.unemployedlistening.analysis.PearsonAccumulator;
+import com.unemployedlistening.io.GenreYearKey;
+import com.unemployedlistening.util.GenreDictionary;
+import com.unemployedlistening.util.UnemploymentLoader;
+import com.unemployedlistening.util.UnemploymentTable;
+
+/**
+ * Reducer that computes CorrelationAnalyzer's per-genre statistics.
+ * The secondary sort on GenreYearKey delivers a genre's counts in year order,
+ * so the year-over-year deltas are fed to a PearsonAccumulator as they
+ * arrive. Years without unemployment data are skipped, as Job 3 drops them.
+ * Results are buffered (one per genre) and written in cleanup in the format of
+ * CorrelationAnalyzer.writeResults: a header, then strongest correlations
+ * first. With a single reducer the output file matches the analyzer's output
+ * for the same final data, except possibly for the order of equally strong
+ * correlations; with several reducers, each part file is sorted on its own.
+ * Input: ((genreId, year), [count]) for each genre, years ascending
+ * Output: genre\tpearson\tdata_points\tavg_unemployment_delta\tavg_count_delta
+ */
+public class CorrelationReducer extends Reducer<GenreYearKey, IntWritable, Text, NullWritable> {
+
+    private GenreDictionary dictionary;
+    // Rates as they appear in the final output (rounded to 2 decimals), indexed by year - EARLIEST_YEAR
+    private double[] rates;
+    private final PearsonAccumulator accumulator = new PearsonAccumulator();
+    private final List<CorrelationAnalyzer.CorrelationResult> results = new ArrayList<>();
+    private Text outputKey = new Text();
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        dictionary = GenreDictionary.loadFromCache(GenreDictionary.CACHE_LINK, context);
+        UnemploymentTable table = UnemploymentTable.loadFromCache(UnemploymentLoader.CACHE_LINK, context);
+
+        // The analyzer works on the rates printed by Job 3, so round them the same way
+        rates = new double[table.endYear() - UnemploymentLoader.EARLIEST_YEAR];
+        for (int i = 0; i < rates.length; i++) {
+            double rate = table.rate(UnemploymentLoader.EARLIEST_YEAR + i);
+            rates[i] = Double.isNaN(rate) ? rate : Double.parseDouble(String.format(Locale.ROOT, "%.2f", rate));
+        }
+    }
+
+    @Override
+    protected void reduce(GenreYearKey key, Iterable<IntWritable> values, Context context)
+            throws IOException, InterruptedException {
+        accumulator.reset();
+        boolean hasPrevious = false;
+        int previousCount = 0;
+        double previousRate = 0;
+
+        // The key is updated to the current record's year as values are iterated
+        for (IntWritable value : values) {
+            double rate = rate(key.getYear());
+            if (Double.isNaN(rate)) {
+                continue;
+            }
+            if (hasPrevious) {
+                accumulator.add(rate - previousRate, (double) value.get() - previousCount);
+            }
+            hasPrevious = true;
+            previousCount = value.get();
+            previousRate = rate;
+        }
+
+        if (accumulator.count() >= 2) {
+            results.add(new CorrelationAnalyzer.CorrelationResult(dictionary.name(key.getGenreId()),
+                    accumulator.correlation(), (int) accumulator.count(), accumulator.meanX(), accumulator.meanY()));
+        }
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        results.sort(CorrelationAnalyzer.CorrelationResult.BY_STRENGTH);
+
+        outputKey.set(CorrelationAnalyzer.RESULTS_HEADER);
+        context.write(outputKey, NullWritable.get());
+        for (CorrelationAnalyzer.CorrelationResult result : results) {
+            outputKey.set(result.format());
+            context.write(outputKey, NullWritable.get());
+        }
+    }
+
+    private double rate(int year) {
+        int index = year - UnemploymentLoader.EARLIEST_YEAR;
+        return index >= 0 && index < rates.length ? rates[index] : Double.NaN;
+    }
+}
@@ -0,0 +1,355 @@
+package com.unemployedlistening.standalone;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import com.unemployedlistening.io.FinalRecord;
+import com.unemployedlistening.util.FieldTokenizer;
+import com.unemployedlistening.util.FinalPartitions;
+import com.unemployedlistening.util.GenreAnnotationTable;
+import com.unemployedlistening.util.GenreDictionary;
+import com.unemployedlistening.util.UnemploymentLoader;
+import com.unemployedlistening.util.UnemploymentTable;
+
+/**
+ * In-process replacement for the three MapReduce jobs, for inputs small enough
+ * to process on one machine.
+ * Memory-maps the MSD file, splits it into line-aligned chunks and joins and
+ * counts each chunk on a fork-join pool against an in-memory
+ * GenreAnnotationTable (the broadcast join of Job 1 and the counting of
+ * Job 2), then merges the per-chunk counts and applies the Job 3 unemployment
+ * join. Parsing and join rules are shared with the MapReduce pipeline, and the
+ * result is written as final/part-m-00000 plus _SUCCESS, byte-identical to the
+ * staged pipeline's output with its default single Job 2 reducer (one
+ * part-m-00000 per directory if final.partition.by is set).
+ *
+ * Inputs must be uncompressed local files with LF or CRLF line endings.
+ */
+public class StandalonePipeline {
+
+    // Worker threads; defaults to the number of available processors
+    public static final String THREADS_KEY = "standalone.threads";
+
+    // Target size of each MSD chunk handed to a worker
+    public static final String CHUNK_BYTES_KEY = "standalone.chunk.bytes";
+    private static final int DEFAULT_CHUNK_BYTES = 8 * 1024 * 1024;
+
+    private static final String OUTPUT_FILE = "part-m-00000";
+    private static final String SUCCESS_FILE = "_SUCCESS";
+
+    private final Configuration conf;
+
+    public StandalonePipeline(Configuration conf) {
+        this.conf = conf;
+    }
+
+    /**
+     * Runs the whole pipeline and writes the final output.
+     *
+     * @param msdFile          MSD file (YEAR<SEP>TRACKID<SEP>ARTIST<SEP>SONG)
+     * @param genreFile        Genre annotations file (TRACKID\tGENRE)
+     * @param unemploymentFile Unemployment data file
+     * @param outputDir        Directory to write, replaced if it exists
+     * @throws IOException if an input cannot be read or the output cannot be written
+     */
+    public void run(File msdFile, File genreFile, File unemploymentFile, File outputDir) throws IOException {
+        GenreAnnotationTable annotations = GenreAnnotationTable.load(genreFile);
+        GenreDictionary dictionary = annotations.dictionary();
+        GenreAnnotationTable genreTable = annotations.withDictionary(dictionary);
+        UnemploymentTable unemploymentData = UnemploymentTable.load(localPath(unemploymentFile), conf);
+
+        int threads = conf.getInt(THREADS_KEY, Runtime.getRuntime().availableProcessors());
+        int chunkBytes = conf.getInt(CHUNK_BYTES_KEY, DEFAULT_CHUNK_BYTES);
+
+        YearCounts counts;
+        try (FileChannel channel = FileChannel.open(msdFile.toPath(), StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(msdFile, channel.size(), chunkBytes);
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+            try {
+                counts = pool.invoke(new ChunkTask(channel, bounds, 0, bounds.length - 1,
+                        genreTable, dictionary.size()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        writeOutput(counts, dictionary, unemploymentData, outputDir);
+    }
+
+    // Hadoop path for a local file, so loaders read it through the local filesystem.
+    private static Path localPath(File file) {
+        return new Path(file.getAbsoluteFile().toURI());
+    }
+
+    // Chunk start offsets plus the file length; every chunk starts at the beginning of a line.
+    private static long[] chunkBounds(File file, long length, int chunkBytes) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            long next = chunkBytes;
+            while (next < length) {
+                // Move the boundary past the end of the line it falls in
+                in.seek(next);
+                int b;
+                while ((b = in.read()) != -1 && b != '\n') {
+                    // Skip to end of line
+                }
+                long boundary = in.getFilePointer();
+                if (boundary >= length) {
+                    break;
+                }
+                bounds.add(boundary);
+                next = boundary + chunkBytes;
+            }
+        }
+        bounds.add(length);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    // Job 3: join counts with unemployment rates and write them sorted by year, then genre.
+    private void writeOutput(YearCounts counts, GenreDictionary dictionary, UnemploymentTable unemploymentData,
+            File outputDir) throws IOException {
+        File finalDir = new File(outputDir, "final");
+        deleteRecursively(finalDir);
+        if (!finalDir.mkdirs()) {
+            throw new IOException("Cannot create output directory " + finalDir);
+        }
+
+        FinalPartitions partitions = FinalPartitions.fromConf(conf);
+        FinalRecord record = new FinalRecord();
+        OutputStream out = partitions.isPartitioned() ? null : openPart(finalDir);
+        String directory = null;
+        try {
+            for (Map.Entry<Integer, int[]> row : counts.sortedRows().entrySet()) {
+                int year = row.getKey();
+                double unemploymentRate = unemploymentData.rate(year);
+                if (Double.isNaN(unemploymentRate)) {
+                    // Skip years without unemployment data
+                    continue;
+                }
+
+                // Rows are in year order, so each partition directory is written in one go
+                if (partitions.isPartitioned() && !partitions.directory(year).equals(directory)) {
+                    if (out != null) {
+                        out.close();
+                    }
+                    directory = partitions.directory(year);
+                    out = openPart(new File(finalDir, directory));
+                }
+
+                int[] genreCounts = row.getValue();
+                for (int genreId = 0; genreId < genreCounts.length; genreId++) {
+                    if (genreCounts[genreId] == 0) {
+                        continue;
+                    }
+                    // Same record format as FinalRecordOutputFormat
+                    record.set(year, dictionary.nameBytes(genreId), genreCounts[genreId], unemploymentRate);
+                    record.writeText(out);
+                    out.write('\n');
+                }
+            }
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+        Files.createFile(new File(finalDir, SUCCESS_FILE).toPath());
+    }
+
+    private static OutputStream openPart(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create output directory " + directory);
+        }
+        return new BufferedOutputStream(Files.newOutputStream(new File(directory, OUTPUT_FILE).toPath()));
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    // Joins and counts chunks [from, to), splitting the range across workers.
+    private static class ChunkTask extends RecursiveTask<YearCounts> {
+
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final int from;
+        private final int to;
+        private final GenreAnnotationTable genreTable;
+        private final int genreCount;
+
+        ChunkTask(FileChannel channel, long[] bounds, int from, int to, GenreAnnotationTable genreTable,
+                int genreCount) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+            this.genreTable = genreTable;
+            this.genreCount = genreCount;
+        }
+
+        @Override
+        protected YearCounts compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                ChunkTask left = new ChunkTask(channel, bounds, from, mid, genreTable, genreCount);
+                ChunkTask right = new ChunkTask(channel, bounds, mid, to, genreTable, genreCount);
+                left.fork();
+                YearCounts counts = right.compute();
+                counts.merge(left.join());
+                return counts;
+            }
+
+            YearCounts counts = new YearCounts(genreCount);
+            if (from < to) {
+                try {
+                    processChunk(bounds[from], bounds[from + 1], counts);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return counts;
+        }
+
+        private void processChunk(long start, long end, YearCounts counts) throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            FieldTokenizer tokenizer = new FieldTokenizer("<SEP>", 2);
+            int[] genreIds = new int[genreTable.maxGenreCount()];
+            byte[] line = new byte[256];
+            int lineLength = 0;
+
+            int limit = buffer.limit();
+            for (int i = 0; i <= limit; i++) {
+                if (i < limit) {
+                    byte b = buffer.get(i);
+                    if (b != '\n') {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, lineLength * 2);
+                        }
+                        line[lineLength++] = b;
+                        continue;
+                    }
+                } else if (lineLength == 0) {
+                    break;
+                }
+                processLine(tokenizer, line, lineLength, genreIds, counts);
+                lineLength = 0;
+            }
+        }
+
+        // Same rules as MsdInputFormat and BroadcastJoinMapper, counted as in GenreCountMapper.
+        private void processLine(FieldTokenizer tokenizer, byte[] line, int length, int[] genreIds,
+                YearCounts counts) {
+            // Expected format: YEAR<SEP>TRACKID<SEP>ARTIST<SEP>SONG
+            if (tokenizer.tokenize(line, 0, length) < 2 || tokenizer.isEmpty(1)) {
+                return;
+            }
+
+            int year;
+            try {
+                year = tokenizer.parseInt(0);
+            } catch (NumberFormatException e) {
+                // Skip malformed lines
+                return;
+            }
+
+            // Filter out songs from before we have unemployment data
+            if (year < UnemploymentLoader.EARLIEST_YEAR) {
+                return;
+            }
+
+            int count = genreTable.lookup(line, tokenizer.start(1), tokenizer.start(1) + tokenizer.length(1),
+                    genreIds);
+            for (int i = 0; i < count; i++) {
+                counts.add(year, genreIds[i]);
+            }
+        }
+    }
+
+    // Per-year genre counts: dense rows for realistic years, a sorted map for anything beyond.
+    private static class YearCounts {
+
+        private static final int DENSE_YEARS = 256;
+
+        private final int genreCount;
+        private final int[][] rows = new int[DENSE_YEARS][];
+        private final TreeMap<Integer, int[]> overflow = new TreeMap<>();
+
+        YearCounts(int genreCount) {
+            this.genreCount = genreCount;
+        }
+
+        void add(int year, int genreId) {
+            row(year)[genreId]++;
+        }
+
+        private int[] row(int year) {
+            int index = year - UnemploymentLoader.EARLIEST_YEAR;
+            if (index < DENSE_YEARS) {
+                if (rows[index] == null) {
+                    rows[index] = new int[genreCount];
+                }
+                return rows[index];
+            }
+            return overflow.computeIfAbsent(year, y -> new int[genreCount]);
+        }
+
+        void merge(YearCounts other) {
+            for (int i = 0; i < DENSE_YEARS; i++) {
+                if (other.rows[i] != null) {
+                    addAll(row(UnemploymentLoader.EARLIEST_YEAR + i), other.rows[i]);
+                }
+            }
+            for (Map.Entry<Integer, int[]> entry : other.overflow.entrySet()) {
+                addAll(row(entry.getKey()), entry.getValue());
+            }
+        }
+
+        private static void addAll(int[] target, int[] source) {
+            for (int i = 0; i < source.length; i++) {
+                target[i] += source[i];
+            }
+        }
+
+        // Rows keyed by year in ascending order.
+        TreeMap<Integer, int[]> sortedRows() {
+            TreeMap<Integer, int[]> sorted = new TreeMap<>(overflow);
+            for (int i = 0; i < DENSE_YEARS; i++) {
+                if (rows[i] != null) {
+                    sorted.put(UnemploymentLoader.EARLIEST_YEAR + i, rows[i]);
+                }
+            }
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.unemployedlistening.util;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * Reusable, allocation-free tokenizer for delimited text records.
+ * Splits a line in place over its UTF-8 bytes and records the bounds of each
+ * field, trimmed of surrounding whitespace the same way String.trim() would.
+ * Fields can then be parsed as ints in place or copied into a reusable Text,
+ * so only the fields a caller actually needs are ever materialized.
+ *
+ * Tokenizing stops after maxFields fields; anything past the last requested
+ * field is never scanned.
+ */
+public class FieldTokenizer {
+
+    private final byte[] delimiter;
+    private final int[] starts;
+    private final int[] ends;
+
+    private byte[] bytes;
+    private int count;
+
+    public FieldTokenizer(String delimiter, int maxFields) {
+        this.delimiter = delimiter.getBytes(StandardCharsets.UTF_8);
+        this.starts = new int[maxFields];
+        this.ends = new int[maxFields];
+    }
+
+    /**
+     * Tokenizes the given line.
+     *
+     * @param line Line to tokenize; must not be modified while fields are in use
+     * @return Number of fields found, or 0 for a blank line
+     */
+    public int tokenize(Text line) {
+        return tokenize(line.getBytes(), 0, line.getLength());
+    }
+
+    /**
+     * Tokenizes the line held in bytes[start, end).
+     *
+     * @return Number of fields found, or 0 for a blank line
+     */
+    public int tokenize(byte[] bytes, int start, int end) {
+        this.bytes = bytes;
+        this.count = 0;
+
+        start = skipBlank(bytes, start, end);
+        end = trimEnd(bytes, start, end);
+        if (start == end) {
+            return 0;
+        }
+
+        int fieldStart = start;
+        while (count < starts.length) {
+            int fieldEnd = indexOfDelimiter(bytes, fieldStart, end);
+            int trimmedStart = skipBlank(bytes, fieldStart, fieldEnd);
+            starts[count] = trimmedStart;
+            ends[count] = trimEnd(bytes, trimmedStart, fieldEnd);
+            count++;
+
+            if (fieldEnd == end) {
+                break;
+            }
+            fieldStart = fieldEnd + delimiter.length;
+        }
+        return count;
+    }
+
+    // Number of fields found by the last call to tokenize.
+    public int count() {
+        return count;
+    }
+
+    // Whether the (trimmed) line starts with the given ASCII character, e.g. '#' for comments.
+    public boolean lineStartsWith(char c) {
+        return count > 0 && bytes[starts[0]] == c;
+    }
+
+    public boolean isEmpty(int field) {
+        return starts[field] == ends[field];
+    }
+
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    public int start(int field) {
+        return starts[field];
+    }
+
+    public int length(int field) {
+        return ends[field] - starts[field];
+    }
+
+    /**
+     * Parses a field as a decimal int without creating a String.
+     * Accepts the same input as Integer.parseInt on the trimmed field.
+     *
+     * @throws NumberFormatException if the field is not a valid int
+     */
+    public int parseInt(int field) {
+        return parseInt(bytes, starts[field], ends[field]);
+    }
+
+    /**
+     * Parses a field as a double. Falls back to Double.parseDouble, so unlike
+     * parseInt this materializes the field as a String.
+     *
+     * @throws NumberFormatException if the field is not a valid double
+     */
+    public double parseDouble(int field) {
+        return Double.parseDouble(getString(field));
+    }
+
+    // Copies a field into a reusable Text.
+    public void copyTo(int field, Text target) {
+        target.set(bytes, starts[field], ends[field] - starts[field]);
+    }
+
+    // Materializes a field as a String.
+    public String getString(int field) {
+        return new String(bytes, starts[field], ends[field] - starts[field], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses bytes[start, end) as a decimal int.
+     *
+     * @throws NumberFormatException if the range is not a valid int
+     */
+    public static int parseInt(byte[] bytes, int start, int end) {
+        if (start >= end) {
+            throw new NumberFormatException("Empty int field");
+        }
+
+        boolean negative = false;
+        byte first = bytes[start];
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++start == end) {
+                throw new NumberFormatException("Sign without digits");
+            }
+        }
+
+        // Accumulate in a long and check against the limit for the sign, so
+        // Integer.MIN_VALUE parses but anything past the int range is rejected
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid digit in int field");
+            }
+            result = result * 10 + digit;
+            if (result > limit) {
+                throw new NumberFormatException("Int field out of range");
+            }
+        }
+        return (int) (negative ? -result : result);
+    }
+
+    private int indexOfDelimiter(byte[] bytes, int from, int end) {
+        int last = end - delimiter.length;
+        byte first = delimiter[0];
+        outer:
+        for (int i = from; i <= last; i++) {
+            if (bytes[i] != first) {
+                continue;
+            }
+            for (int j = 1; j < delimiter.length; j++) {
+                if (bytes[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return end;
+    }
+
+    // Same definition of whitespace as String.trim(): any char <= ' '
+    private static int skipBlank(byte[] bytes, int start, int end) {
+        while (start < end && (bytes[start] & 0xff) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(byte[] bytes, int start, int end) {
+        while (end > start && (bytes[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,90 @@
+package com.unemployedlistening.util;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Directory layout of the final output when it is partitioned by time.
+ * With final.partition.by=year each record goes to final/year=YYYY/, with
+ * final.partition.by=decade to final/decade=YYY0/; the default ("none") keeps
+ * the flat final/part-* layout. Readers use partitionYears() to skip
+ * partition directories outside the years they need.
+ */
+public class FinalPartitions {
+
+    // "none", "year" or "decade"
+    public static final String PARTITION_BY_KEY = "final.partition.by";
+    public static final String NONE = "none";
+    public static final String YEAR = "year";
+    public static final String DECADE = "decade";
+
+    // Base paths of realistic years, built once per task instead of per record
+    private static final int CACHED_YEARS = 256;
+
+    private final String scheme;
+    private final String[] basePaths = new String[CACHED_YEARS];
+
+    private FinalPartitions(String scheme) {
+        this.scheme = scheme;
+    }
+
+    /**
+     * Reads the partitioning scheme from the configuration.
+     *
+     * @throws IllegalArgumentException if the scheme is not one of none, year or decade
+     */
+    public static FinalPartitions fromConf(Configuration conf) {
+        String scheme = conf.get(PARTITION_BY_KEY, NONE).trim().toLowerCase();
+        if (!NONE.equals(scheme) && !YEAR.equals(scheme) && !DECADE.equals(scheme)) {
+            throw new IllegalArgumentException("Unknown " + PARTITION_BY_KEY + ": " + scheme);
+        }
+        return new FinalPartitions(scheme);
+    }
+
+    public boolean isPartitioned() {
+        return !NONE.equals(scheme);
+    }
+
+    /**
+     * Base output path (relative to the output directory) of a record of the
+     * given year, for MultipleOutputs: e.g. "year=1985/part".
+     */
+    public String basePath(int year) {
+        int index = year - UnemploymentLoader.EARLIEST_YEAR;
+        if (index < 0 || index >= CACHED_YEARS) {
+            return directory(year) + "/part";
+        }
+        if (basePaths[index] == null) {
+            basePaths[index] = directory(year) + "/part";
+        }
+        return basePaths[index];
+    }
+
+    // Partition directory of the given year, e.g. "decade=1980"; only valid if isPartitioned().
+    public String directory(int year) {
+        return YEAR.equals(scheme) ? YEAR + "=" + year : DECADE + "=" + Math.floorDiv(year, 10) * 10;
+    }
+
+    /**
+     * First and last year a partition directory can hold, from its name, or
+     * null if the name is not a partition directory name.
+     */
+    public static int[] partitionYears(String directoryName) {
+        int separator = directoryName.indexOf('=');
+        if (separator < 0) {
+            return null;
+        }
+        int start;
+        try {
+            start = Integer.parseInt(directoryName.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        String scheme = directoryName.substring(0, separator);
+        if (YEAR.equals(scheme)) {
+            return new int[] { start, start };
+        } else if (DECADE.equals(scheme)) {
+            return new int[] { start, start + 9 };
+        }
+        return null;
+    }
+}
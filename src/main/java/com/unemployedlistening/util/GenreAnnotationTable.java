@@ -0,0 +1,347 @@
+package com.unemployedlistening.util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.JobContext;
+
+/**
+ * Compact in-memory track ID to genre table built from the tagtraum genre
+ * annotations file (TRACKID\tGENRE).
+ * Used for map-side (broadcast) joins, where the whole annotation file fits in
+ * every map task.
+ *
+ * Track IDs are packed back to back into one byte array and genres are stored
+ * once in a dictionary, with each track pointing at a run of genre IDs, so the
+ * table holds no per-entry objects. Lookups go through an open-addressed hash
+ * index and compare raw bytes, so callers can probe with a Text or a slice of
+ * an input buffer without creating a String. Join code binds the table to the
+ * genre dictionary once with withDictionary and then looks tracks up straight
+ * into dictionary IDs.
+ */
+public class GenreAnnotationTable {
+
+    private final String[] genreNames;
+    private final byte[] idBytes;
+    private final int[] idOffsets;
+    private final int[] offsets;
+    private final int[] genreIds;
+    private final int[] slots;
+    private final int maxGenreCount;
+
+    private GenreAnnotationTable(String[] genreNames, byte[] idBytes, int[] idOffsets, int[] offsets,
+            int[] genreIds) {
+        this(genreNames, idBytes, idOffsets, offsets, genreIds, buildSlots(idBytes, idOffsets));
+    }
+
+    private GenreAnnotationTable(String[] genreNames, byte[] idBytes, int[] idOffsets, int[] offsets,
+            int[] genreIds, int[] slots) {
+        this.genreNames = genreNames;
+        this.idBytes = idBytes;
+        this.idOffsets = idOffsets;
+        this.offsets = offsets;
+        this.genreIds = genreIds;
+        this.slots = slots;
+
+        int max = 0;
+        for (int i = 0; i + 1 < offsets.length; i++) {
+            max = Math.max(max, offsets[i + 1] - offsets[i]);
+        }
+        this.maxGenreCount = max;
+    }
+
+    // Power-of-two index at most half full; -1 marks an empty slot
+    private static int[] buildSlots(byte[] idBytes, int[] idOffsets) {
+        int trackCount = idOffsets.length - 1;
+        int capacity = Integer.highestOneBit(Math.max(2, trackCount) * 2 - 1) << 1;
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, -1);
+        for (int i = 0; i < trackCount; i++) {
+            int slot = hash(idBytes, idOffsets[i], idOffsets[i + 1]) & (capacity - 1);
+            while (slots[slot] != -1) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            slots[slot] = i;
+        }
+        return slots;
+    }
+
+    /**
+     * Returns the index of the given track in this table, or -1 if the track has
+     * no genre annotation.
+     */
+    public int indexOf(Text trackId) {
+        return indexOf(trackId.getBytes(), 0, trackId.getLength());
+    }
+
+    /**
+     * Returns the index of the track whose UTF-8 ID is held in bytes[start, end),
+     * or -1 if the track has no genre annotation.
+     */
+    public int indexOf(byte[] bytes, int start, int end) {
+        int mask = slots.length - 1;
+        int slot = hash(bytes, start, end) & mask;
+        int index;
+        while ((index = slots[slot]) != -1) {
+            if (idEquals(index, bytes, start, end)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the genre IDs annotated for the given track into ids.
+     *
+     * @param trackId Track to look up
+     * @param ids     Destination, with room for at least maxGenreCount() IDs
+     * @return Number of IDs copied; 0 if the track has no genre annotation
+     */
+    public int lookup(Text trackId, int[] ids) {
+        return lookup(trackId.getBytes(), 0, trackId.getLength(), ids);
+    }
+
+    /**
+     * Copies the genre IDs annotated for the track whose UTF-8 ID is held in
+     * bytes[start, end) into ids.
+     *
+     * @param ids Destination, with room for at least maxGenreCount() IDs
+     * @return Number of IDs copied; 0 if the track has no genre annotation
+     */
+    public int lookup(byte[] bytes, int start, int end, int[] ids) {
+        int index = indexOf(bytes, start, end);
+        if (index < 0) {
+            return 0;
+        }
+        int count = offsets[index + 1] - offsets[index];
+        System.arraycopy(genreIds, offsets[index], ids, 0, count);
+        return count;
+    }
+
+    // Largest number of genres annotated for one track, the size lookup() buffers need.
+    public int maxGenreCount() {
+        return maxGenreCount;
+    }
+
+    /**
+     * Returns a table of the same tracks whose genre IDs are IDs of the given
+     * dictionary, so joins can emit them without string lookups. Genres missing
+     * from the dictionary are dropped.
+     *
+     * @param dictionary Dictionary to translate into
+     * @return The translated table, sharing this table's track index
+     */
+    public GenreAnnotationTable withDictionary(GenreDictionary dictionary) {
+        int[] mapping = new int[genreNames.length];
+        for (int i = 0; i < genreNames.length; i++) {
+            mapping[i] = dictionary.idOf(genreNames[i]);
+        }
+        String[] dictionaryNames = new String[dictionary.size()];
+        for (int i = 0; i < dictionaryNames.length; i++) {
+            dictionaryNames[i] = dictionary.name(i);
+        }
+
+        int trackCount = size();
+        int[] mappedOffsets = new int[trackCount + 1];
+        int[] mappedIds = new int[genreIds.length];
+        int n = 0;
+        for (int track = 0; track < trackCount; track++) {
+            mappedOffsets[track] = n;
+            for (int i = offsets[track]; i < offsets[track + 1]; i++) {
+                int genreId = mapping[genreIds[i]];
+                if (genreId >= 0) {
+                    mappedIds[n++] = genreId;
+                }
+            }
+        }
+        mappedOffsets[trackCount] = n;
+        return new GenreAnnotationTable(dictionaryNames, idBytes, idOffsets, mappedOffsets,
+                Arrays.copyOf(mappedIds, n), slots);
+    }
+
+    /**
+     * Dictionary of the genres in this table, the same dictionary
+     * GenreDictionary.build makes from the annotations file the table was
+     * loaded from, so a caller that has loaded the table need not read the
+     * file again.
+     */
+    public GenreDictionary dictionary() {
+        return GenreDictionary.of(Arrays.asList(genreNames));
+    }
+
+    // Number of distinct annotated tracks.
+    public int size() {
+        return idOffsets.length - 1;
+    }
+
+    private boolean idEquals(int index, byte[] bytes, int start, int end) {
+        int idStart = idOffsets[index];
+        if (idOffsets[index + 1] - idStart != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (idBytes[idStart++] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] bytes, int start, int end) {
+        int h = 1;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Loads the genre table from a file on the given path's filesystem.
+     *
+     * @param path Path to the genre annotations file
+     * @param conf Hadoop configuration
+     * @return The loaded table
+     * @throws IOException if file cannot be read
+     */
+    public static GenreAnnotationTable load(Path path, Configuration conf) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        try (InputStream in = fs.open(path)) {
+            return load(in);
+        }
+    }
+
+    /**
+     * Loads the genre table from a local file, such as a distributed cache
+     * symlink in the task working directory.
+     *
+     * @param file Local genre annotations file
+     * @return The loaded table
+     * @throws IOException if file cannot be read
+     */
+    public static GenreAnnotationTable load(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return load(in);
+        }
+    }
+
+    /**
+     * Loads the genre table shipped through the distributed cache under the given
+     * symlink name. The localized copy in the task working directory is used when
+     * present; otherwise the cache file is read from its original filesystem.
+     *
+     * @param linkName Symlink (URI fragment) the genre file was cached under
+     * @param context  Task context
+     * @return The loaded table
+     * @throws IOException if the file is missing from the cache or cannot be read
+     */
+    public static GenreAnnotationTable loadFromCache(String linkName, JobContext context) throws IOException {
+        File localCopy = new File(linkName);
+        if (localCopy.isFile()) {
+            return load(localCopy);
+        }
+
+        URI[] cacheFiles = context.getCacheFiles();
+        if (cacheFiles != null) {
+            for (URI cacheFile : cacheFiles) {
+                if (linkName.equals(cacheFile.getFragment())) {
+                    return load(new Path(cacheFile.getScheme(), cacheFile.getAuthority(), cacheFile.getPath()),
+                            context.getConfiguration());
+                }
+            }
+        }
+        throw new IOException("Genre annotations file not found in distributed cache");
+    }
+
+    private static GenreAnnotationTable load(InputStream in) throws IOException {
+        Map<String, Integer> genreIdsByName = new HashMap<>();
+        List<String> genreNames = new ArrayList<>();
+        List<String> rowTrackIds = new ArrayList<>();
+        List<Integer> rowGenreIds = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+
+                // Skip empty lines and comments
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                // Tab-delimited: TRACKID\tGENRE
+                String[] parts = line.split("\t");
+                if (parts.length < 2) {
+                    continue;
+                }
+
+                String trackId = parts[0].trim();
+                String genre = parts[1].trim();
+                if (trackId.isEmpty() || genre.isEmpty()) {
+                    continue;
+                }
+
+                Integer genreId = genreIdsByName.get(genre);
+                if (genreId == null) {
+                    genreId = genreNames.size();
+                    genreIdsByName.put(genre, genreId);
+                    genreNames.add(genre);
+                }
+                rowTrackIds.add(trackId);
+                rowGenreIds.add(genreId);
+            }
+        }
+
+        // Group rows by track ID so each track's genres are contiguous
+        Integer[] order = new Integer[rowTrackIds.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> rowTrackIds.get(a).compareTo(rowTrackIds.get(b)));
+
+        // Pack each distinct track ID once into a shared byte pool
+        ByteArrayOutputStream idBytes = new ByteArrayOutputStream();
+        int[] idOffsets = new int[order.length + 1];
+        int[] offsets = new int[order.length + 1];
+        int[] genreIds = new int[order.length];
+        int trackCount = 0;
+        String previous = null;
+        for (int i = 0; i < order.length; i++) {
+            String trackId = rowTrackIds.get(order[i]);
+            if (!trackId.equals(previous)) {
+                idOffsets[trackCount] = idBytes.size();
+                offsets[trackCount] = i;
+                byte[] encoded = trackId.getBytes(StandardCharsets.UTF_8);
+                idBytes.write(encoded, 0, encoded.length);
+                trackCount++;
+                previous = trackId;
+            }
+            genreIds[i] = rowGenreIds.get(order[i]);
+        }
+        idOffsets[trackCount] = idBytes.size();
+        offsets[trackCount] = order.length;
+
+        return new GenreAnnotationTable(
+                genreNames.toArray(new String[0]),
+                idBytes.toByteArray(),
+                Arrays.copyOf(idOffsets, trackCount + 1),
+                Arrays.copyOf(offsets, trackCount + 1),
+                genreIds);
+    }
+}
@@ -0,0 +1,232 @@
+package com.unemployedlistening.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.JobContext;
+
+/**
+ * Dictionary of genre names to dense integer IDs.
+ * Built once by the driver from the genre annotations file and shipped to
+ * tasks through the distributed cache, so genres can travel through the
+ * shuffle as ints. IDs follow the sorted order of the genre names, so sorting
+ * by ID gives the same order as sorting by name.
+ *
+ * File format: one genre name per line; the line number is the genre ID.
+ */
+public class GenreDictionary {
+
+    // Symlink name of the dictionary in the distributed cache
+    public static final String CACHE_LINK = "genre_dictionary.cache";
+
+    private final String[] names;
+    private final byte[][] nameBytes;
+    private final Map<String, Integer> idsByName;
+    private final Map<Text, Integer> idsByText;
+
+    private GenreDictionary(List<String> names) {
+        this.names = names.toArray(new String[0]);
+        this.nameBytes = new byte[this.names.length][];
+        this.idsByName = new HashMap<>();
+        this.idsByText = new HashMap<>();
+        for (int i = 0; i < this.names.length; i++) {
+            idsByName.put(this.names[i], i);
+            idsByText.put(new Text(this.names[i]), i);
+            nameBytes[i] = this.names[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    // Returns the ID for the given genre name, or -1 if it is not in the dictionary.
+    public int idOf(String genre) {
+        Integer id = idsByName.get(genre);
+        return id != null ? id : -1;
+    }
+
+    // Returns the ID for the given UTF-8 genre name, or -1 if it is not in the dictionary.
+    public int idOf(Text genre) {
+        Integer id = idsByText.get(genre);
+        return id != null ? id : -1;
+    }
+
+    // Returns the genre name for the given ID.
+    public String name(int id) {
+        return names[id];
+    }
+
+    // Returns the UTF-8 genre name for the given ID; the shared array must not be modified.
+    public byte[] nameBytes(int id) {
+        return nameBytes[id];
+    }
+
+    // Number of genres in the dictionary.
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Builds a dictionary from all distinct genres in the genre annotations file
+     * (TRACKID\tGENRE).
+     *
+     * @param genrePath Path to the genre annotations file
+     * @param conf      Hadoop configuration
+     * @return Dictionary of the distinct genres in sorted order
+     * @throws IOException if file cannot be read
+     */
+    public static GenreDictionary build(Path genrePath, Configuration conf) throws IOException {
+        return new GenreDictionary(new ArrayList<>(readGenres(genrePath, conf)));
+    }
+
+    /**
+     * Returns a dictionary that keeps every ID of this one and appends the
+     * genres of the given annotations file that are not in it yet, in sorted
+     * order. Used by incremental runs, whose persisted state refers to the
+     * existing IDs; appended genres no longer sort by name in ID order.
+     *
+     * @param genrePath Path to a genre annotations file (TRACKID\tGENRE)
+     * @param conf      Hadoop configuration
+     * @return The extended dictionary
+     * @throws IOException if file cannot be read
+     */
+    public GenreDictionary extend(Path genrePath, Configuration conf) throws IOException {
+        List<String> extended = new ArrayList<>(Arrays.asList(names));
+        for (String genre : readGenres(genrePath, conf)) {
+            if (!idsByName.containsKey(genre)) {
+                extended.add(genre);
+            }
+        }
+        return new GenreDictionary(extended);
+    }
+
+    // Dictionary of the distinct given genres in sorted order, as build() makes from an annotations file.
+    static GenreDictionary of(Collection<String> genres) {
+        return new GenreDictionary(new ArrayList<>(new TreeSet<>(genres)));
+    }
+
+    // An empty dictionary, the starting point for extend().
+    public static GenreDictionary empty() {
+        return new GenreDictionary(new ArrayList<>());
+    }
+
+    // Distinct genres of an annotations file, in sorted order.
+    private static TreeSet<String> readGenres(Path genrePath, Configuration conf) throws IOException {
+        TreeSet<String> genres = new TreeSet<>();
+
+        FileSystem fs = genrePath.getFileSystem(conf);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(genrePath), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+
+                // Skip empty lines and comments
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                // Tab-delimited: TRACKID\tGENRE
+                String[] parts = line.split("\t");
+                if (parts.length < 2) {
+                    continue;
+                }
+
+                String genre = parts[1].trim();
+                if (!parts[0].trim().isEmpty() && !genre.isEmpty()) {
+                    genres.add(genre);
+                }
+            }
+        }
+
+        return genres;
+    }
+
+    /**
+     * Writes this dictionary to the given path, one genre per line.
+     *
+     * @param path Destination path
+     * @param conf Hadoop configuration
+     * @throws IOException if file cannot be written
+     */
+    public void write(Path path, Configuration conf) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(fs.create(path, true), StandardCharsets.UTF_8))) {
+            for (String name : names) {
+                writer.write(name);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Loads a dictionary previously written with {@link #write}.
+     *
+     * @param path Path to the dictionary file
+     * @param conf Hadoop configuration
+     * @return The loaded dictionary
+     * @throws IOException if file cannot be read
+     */
+    public static GenreDictionary load(Path path, Configuration conf) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        try (InputStream in = fs.open(path)) {
+            return load(in);
+        }
+    }
+
+    /**
+     * Loads the dictionary shipped through the distributed cache under the given
+     * symlink name, preferring the localized copy in the task working directory.
+     *
+     * @param linkName Symlink (URI fragment) the dictionary was cached under
+     * @param context  Task context
+     * @return The loaded dictionary
+     * @throws IOException if the file is missing from the cache or cannot be read
+     */
+    public static GenreDictionary loadFromCache(String linkName, JobContext context) throws IOException {
+        File localCopy = new File(linkName);
+        if (localCopy.isFile()) {
+            try (InputStream in = new FileInputStream(localCopy)) {
+                return load(in);
+            }
+        }
+
+        URI[] cacheFiles = context.getCacheFiles();
+        if (cacheFiles != null) {
+            for (URI cacheFile : cacheFiles) {
+                if (linkName.equals(cacheFile.getFragment())) {
+                    return load(new Path(cacheFile.getScheme(), cacheFile.getAuthority(), cacheFile.getPath()),
+                            context.getConfiguration());
+                }
+            }
+        }
+        throw new IOException("Genre dictionary not found in distributed cache");
+    }
+
+    private static GenreDictionary load(InputStream in) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                names.add(line);
+            }
+        }
+        return new GenreDictionary(names);
+    }
+}
@@ -0,0 +1,219 @@
+package com.unemployedlistening.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Fingerprint of everything a pipeline stage's output depends on: its input
+ * files (or the fingerprint of the upstream stage that produced them), the
+ * code that ran it and the configuration that affects its output.
+ * The driver stores the fingerprint as _FINGERPRINT next to the stage output
+ * and skips the stage on a later run if the recomputed fingerprint matches.
+ * Hadoop input formats ignore files starting with "_", so the file is never
+ * read as data by the next stage.
+ */
+public class StageFingerprint {
+
+    public static final String FILE_NAME = "_FINGERPRINT";
+
+    private static final String SUCCESS_FILE = "_SUCCESS";
+
+    // Hash of the running code, computed once per JVM
+    private static String codeVersion;
+
+    private final MessageDigest digest;
+
+    private StageFingerprint(String stage) {
+        digest = sha256();
+        update("stage", stage);
+    }
+
+    // Starts a fingerprint for the named stage.
+    public static StageFingerprint forStage(String stage) {
+        return new StageFingerprint(stage);
+    }
+
+    /**
+     * Adds an input file or directory. Uses the filesystem checksum where
+     * available (HDFS) and a hash of the contents otherwise; hidden files
+     * ("_" or "." prefix) in directories are ignored, as input formats do.
+     */
+    public StageFingerprint addInput(FileSystem fs, Path path) throws IOException {
+        List<FileStatus> files = new ArrayList<>();
+        collectFiles(fs, fs.getFileStatus(path), files);
+        files.sort((a, b) -> a.getPath().toString().compareTo(b.getPath().toString()));
+
+        String root = fs.makeQualified(path).toString();
+        for (FileStatus file : files) {
+            // Relative names, so moving an unchanged input does not invalidate the stage
+            String name = fs.makeQualified(file.getPath()).toString();
+            update("file", name.startsWith(root) ? name.substring(root.length()) : file.getPath().getName());
+            update("length", Long.toString(file.getLen()));
+
+            FileChecksum checksum = fs.getFileChecksum(file.getPath());
+            if (checksum != null) {
+                update("checksum", checksum.getAlgorithmName() + ":" + toHex(checksum.getBytes()));
+            } else {
+                update("content", contentHash(fs, file.getPath()));
+            }
+        }
+        return this;
+    }
+
+    // Adds the fingerprint of an upstream stage whose output this stage reads.
+    public StageFingerprint addUpstream(String fingerprint) {
+        update("upstream", fingerprint);
+        return this;
+    }
+
+    // Adds the values of configuration keys that affect this stage's output.
+    public StageFingerprint addConf(Configuration conf, String... keys) {
+        for (String key : keys) {
+            update("conf", key + "=" + conf.get(key, ""));
+        }
+        return this;
+    }
+
+    // Adds the version of the code, hashed from the jar (or class directory) it was loaded from.
+    public StageFingerprint addCode(Class<?> anchor) throws IOException {
+        update("code", codeVersion(anchor));
+        return this;
+    }
+
+    // Completes the fingerprint as a hex string; the builder cannot be used afterwards.
+    public String finish() {
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Whether a completed stage output with the given fingerprint exists in the
+     * directory.
+     */
+    public static boolean matches(FileSystem fs, Path outputDir, String fingerprint) throws IOException {
+        Path fingerprintFile = new Path(outputDir, FILE_NAME);
+        if (!fs.exists(new Path(outputDir, SUCCESS_FILE)) || !fs.exists(fingerprintFile)) {
+            return false;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(fs.open(fingerprintFile), StandardCharsets.UTF_8))) {
+            return fingerprint.equals(reader.readLine());
+        }
+    }
+
+    // Records the fingerprint of a stage output that has just been written.
+    public static void write(FileSystem fs, Path outputDir, String fingerprint) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(fs.create(new Path(outputDir, FILE_NAME), true), StandardCharsets.UTF_8))) {
+            writer.write(fingerprint);
+            writer.newLine();
+        }
+    }
+
+    private static void collectFiles(FileSystem fs, FileStatus status, List<FileStatus> files) throws IOException {
+        if (status.isFile()) {
+            files.add(status);
+            return;
+        }
+        for (FileStatus child : fs.listStatus(status.getPath())) {
+            String name = child.getPath().getName();
+            if (!name.startsWith("_") && !name.startsWith(".")) {
+                collectFiles(fs, child, files);
+            }
+        }
+    }
+
+    private static String contentHash(FileSystem fs, Path path) throws IOException {
+        MessageDigest content = sha256();
+        try (InputStream in = fs.open(path)) {
+            hash(content, in);
+        }
+        return toHex(content.digest());
+    }
+
+    private static synchronized String codeVersion(Class<?> anchor) throws IOException {
+        if (codeVersion != null) {
+            return codeVersion;
+        }
+
+        File location;
+        try {
+            location = new File(anchor.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException | NullPointerException e) {
+            throw new IOException("Cannot locate code for " + anchor.getName(), e);
+        }
+
+        // A jar is hashed whole; a class directory (IDE runs) is hashed file by file in path order
+        MessageDigest code = sha256();
+        if (location.isFile()) {
+            try (InputStream in = Files.newInputStream(location.toPath())) {
+                hash(code, in);
+            }
+        } else {
+            List<java.nio.file.Path> classFiles;
+            try (Stream<java.nio.file.Path> paths = Files.walk(location.toPath())) {
+                classFiles = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for (java.nio.file.Path classFile : classFiles) {
+                code.update(location.toPath().relativize(classFile).toString().getBytes(StandardCharsets.UTF_8));
+                code.update(Files.readAllBytes(classFile));
+            }
+        }
+        codeVersion = toHex(code.digest());
+        return codeVersion;
+    }
+
+    private static void hash(MessageDigest digest, InputStream in) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            digest.update(buffer, 0, read);
+        }
+    }
+
+    private void update(String field, String value) {
+        // Length-prefix each value so distinct field sequences cannot collide
+        byte[] bytes = (field + "=" + value).getBytes(StandardCharsets.UTF_8);
+        digest.update(intBytes(bytes.length));
+        digest.update(bytes);
+    }
+
+    private static byte[] intBytes(int value) {
+        return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >>> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,302 @@
+package com.unemployedlistening.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.util.LineReader;
+
+/**
+ * Bloom filter over track IDs, used to prune records before the Job 1 shuffle
+ * that cannot possibly find a join partner.
+ * Membership tests hash raw bytes, so a mapper can probe with the Text it
+ * already holds without allocating.
+ */
+public class TrackIdBloomFilter implements Writable {
+
+    // Conservative lower bounds on line length, used to size filters from file length
+    private static final int MIN_GENRE_LINE_BYTES = 20;
+    private static final int MIN_MSD_LINE_BYTES = 32;
+
+    private long[] bits;
+    private int numBits;
+    private int numHashes;
+
+    public TrackIdBloomFilter() {
+    }
+
+    private TrackIdBloomFilter(int numBits, int numHashes) {
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+        this.bits = new long[(numBits + 63) >>> 6];
+    }
+
+    /**
+     * Creates an empty filter sized for the expected number of entries and the
+     * target false-positive rate.
+     */
+    public static TrackIdBloomFilter create(long expectedEntries, double falsePositiveRate) {
+        long n = Math.max(1, expectedEntries);
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (ln2 * ln2));
+        int numBits = (int) Math.max(64, Math.min(m, Integer.MAX_VALUE - 63));
+        int numHashes = (int) Math.max(1, Math.round((double) numBits / n * ln2));
+        return new TrackIdBloomFilter(numBits, numHashes);
+    }
+
+    public void add(byte[] bytes, int start, int length) {
+        long hash = hash(bytes, start, length);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < numHashes; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    // Returns false if the track ID was definitely never added.
+    public boolean mightContain(Text trackId) {
+        return mightContain(trackId.getBytes(), 0, trackId.getLength());
+    }
+
+    // Returns false if the track ID in bytes[start, start + length) was definitely never added.
+    public boolean mightContain(byte[] bytes, int start, int length) {
+        long hash = hash(bytes, start, length);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < numHashes; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 64-bit FNV-1a with a murmur finalizer; the halves drive double hashing.
+    private static long hash(byte[] bytes, int start, int length) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < start + length; i++) {
+            h = (h ^ (bytes[i] & 0xff)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(numBits);
+        out.writeInt(numHashes);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        numBits = in.readInt();
+        numHashes = in.readInt();
+        bits = new long[(numBits + 63) >>> 6];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = in.readLong();
+        }
+    }
+
+    /**
+     * Builds a filter over every annotated track ID in the genre annotations input
+     * (TRACKID\tGENRE). The input may be a file, a directory or a glob, with
+     * compressed files decompressed by extension, as for Job 1 itself.
+     *
+     * @param genrePath         Path to the genre annotations input
+     * @param conf              Hadoop configuration
+     * @param falsePositiveRate Target false-positive rate
+     * @return Filter of annotated track IDs
+     * @throws IOException if the input cannot be read
+     */
+    public static TrackIdBloomFilter fromGenreFile(Path genrePath, Configuration conf, double falsePositiveRate)
+            throws IOException {
+        List<FileStatus> files = InputFiles.list(genrePath, conf);
+        CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+        TrackIdBloomFilter filter = create(expectedLines(files, conf, codecs, MIN_GENRE_LINE_BYTES),
+                falsePositiveRate);
+
+        FieldTokenizer tokenizer = new FieldTokenizer("\t", 2);
+        Text line = new Text();
+        for (FileStatus file : files) {
+            try (LineReader reader = new LineReader(open(file.getPath(), conf, codecs))) {
+                while (reader.readLine(line) > 0) {
+                    // Tab-delimited: TRACKID\tGENRE; skip comments
+                    if (tokenizer.tokenize(line) < 2 || tokenizer.lineStartsWith('#')
+                            || tokenizer.isEmpty(0) || tokenizer.isEmpty(1)) {
+                        continue;
+                    }
+                    filter.add(tokenizer.bytes(), tokenizer.start(0), tokenizer.length(0));
+                }
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * Builds a filter over the track IDs of MSD records from minYear onwards
+     * (YEAR<SEP>TRACKID<SEP>ARTIST<SEP>SONG). The input may be a file, a
+     * directory or a glob, with compressed files decompressed by extension,
+     * as for Job 1 itself.
+     *
+     * @param msdPath           Path to the MSD input
+     * @param conf              Hadoop configuration
+     * @param falsePositiveRate Target false-positive rate
+     * @param minYear           Earliest year whose tracks are added
+     * @return Filter of track IDs that pass the year filter
+     * @throws IOException if the input cannot be read
+     */
+    public static TrackIdBloomFilter fromMsdFile(Path msdPath, Configuration conf, double falsePositiveRate,
+            int minYear) throws IOException {
+        List<FileStatus> files = InputFiles.list(msdPath, conf);
+        CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+        TrackIdBloomFilter filter = create(expectedLines(files, conf, codecs, MIN_MSD_LINE_BYTES),
+                falsePositiveRate);
+
+        FieldTokenizer tokenizer = new FieldTokenizer("<SEP>", 2);
+        Text line = new Text();
+        for (FileStatus file : files) {
+            try (LineReader reader = new LineReader(open(file.getPath(), conf, codecs))) {
+                while (reader.readLine(line) > 0) {
+                    // Expected format: YEAR<SEP>TRACKID<SEP>ARTIST<SEP>SONG
+                    if (tokenizer.tokenize(line) < 2 || tokenizer.isEmpty(1)) {
+                        continue;
+                    }
+                    try {
+                        if (tokenizer.parseInt(0) < minYear) {
+                            continue;
+                        }
+                    } catch (NumberFormatException e) {
+                        // Skip malformed lines
+                        continue;
+                    }
+                    filter.add(tokenizer.bytes(), tokenizer.start(1), tokenizer.length(1));
+                }
+            }
+        }
+        return filter;
+    }
+
+    // Upper bound on the lines of the input files: plain files are sized from their length, compressed ones counted.
+    private static long expectedLines(List<FileStatus> files, Configuration conf, CompressionCodecFactory codecs,
+            int minLineBytes) throws IOException {
+        long lines = 0;
+        Text line = new Text();
+        for (FileStatus file : files) {
+            if (codecs.getCodec(file.getPath()) == null) {
+                lines += file.getLen() / minLineBytes;
+                continue;
+            }
+            try (LineReader reader = new LineReader(open(file.getPath(), conf, codecs))) {
+                while (reader.readLine(line) > 0) {
+                    lines++;
+                }
+            }
+        }
+        return lines;
+    }
+
+    // Opens an input file, decompressing it if its extension names a codec.
+    private static InputStream open(Path path, Configuration conf, CompressionCodecFactory codecs)
+            throws IOException {
+        InputStream in = path.getFileSystem(conf).open(path);
+        CompressionCodec codec = codecs.getCodec(path);
+        return codec != null ? codec.createInputStream(in) : in;
+    }
+
+    // Lists the files of an input path exactly as FileInputFormat does for a job reading it.
+    private static class InputFiles extends FileInputFormat<Object, Object> {
+
+        static List<FileStatus> list(Path path, Configuration conf) throws IOException {
+            Job job = Job.getInstance(conf);
+            FileInputFormat.addInputPath(job, path);
+            return new InputFiles().listStatus(job);
+        }
+
+        @Override
+        public RecordReader<Object, Object> createRecordReader(InputSplit split, TaskAttemptContext context) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Writes this filter to the given path.
+     *
+     * @param path Destination path
+     * @param conf Hadoop configuration
+     * @throws IOException if file cannot be written
+     */
+    public void save(Path path, Configuration conf) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        try (FSDataOutputStream out = fs.create(path, true)) {
+            write(out);
+        }
+    }
+
+    /**
+     * Loads the filter shipped through the distributed cache under the given
+     * symlink name, preferring the localized copy in the task working directory.
+     *
+     * @param linkName Symlink (URI fragment) the filter was cached under
+     * @param context  Task context
+     * @return The loaded filter, or null if no filter was shipped under that name
+     * @throws IOException if the filter cannot be read
+     */
+    public static TrackIdBloomFilter loadFromCache(String linkName, JobContext context) throws IOException {
+        File localCopy = new File(linkName);
+        if (localCopy.isFile()) {
+            try (InputStream in = new FileInputStream(localCopy)) {
+                return read(in);
+            }
+        }
+
+        URI[] cacheFiles = context.getCacheFiles();
+        if (cacheFiles != null) {
+            for (URI cacheFile : cacheFiles) {
+                if (linkName.equals(cacheFile.getFragment())) {
+                    Path path = new Path(cacheFile.getScheme(), cacheFile.getAuthority(), cacheFile.getPath());
+                    try (InputStream in = path.getFileSystem(context.getConfiguration()).open(path)) {
+                        return read(in);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static TrackIdBloomFilter read(InputStream in) throws IOException {
+        TrackIdBloomFilter filter = new TrackIdBloomFilter();
+        filter.readFields(new DataInputStream(new BufferedInputStream(in)));
+        return filter;
+    }
+}
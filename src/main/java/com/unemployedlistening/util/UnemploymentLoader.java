@@ -2,7 +2,9 @@ package com.unemployedlistening.util;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -16,6 +18,9 @@ import org.apache.hadoop.fs.Path;
  */
 public class UnemploymentLoader {
 
+    // Symlink name of the unemployment table (binary or text) in the distributed cache
+    public static final String CACHE_LINK = "unemployment.cache";
+
     /**
      * Loads unemployment data from a file and returns a map of year to annual
      * average rate.
@@ -26,10 +31,17 @@ public class UnemploymentLoader {
      * @throws IOException if file cannot be read
      */
     public static Map<Integer, Double> loadUnemploymentData(Path path, Configuration conf) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        try (InputStream in = fs.open(path)) {
+            return parse(in);
+        }
+    }
+
+    // Parses BLS text (YEAR,JAN,...,DEC per line) into annual averages by year.
+    static Map<Integer, Double> parse(InputStream in) throws IOException {
         Map<Integer, Double> unemploymentByYear = new HashMap<>();
 
-        FileSystem fs = FileSystem.get(conf);
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(path)))) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 line = line.trim();
@@ -0,0 +1,180 @@
+package com.unemployedlistening.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.JobContext;
+
+/**
+ * Annual average unemployment rates in a primitive array indexed by
+ * year - EARLIEST_YEAR, with NaN for years without data. Years before
+ * EARLIEST_YEAR are dropped, since no song from before then is counted.
+ *
+ * The driver writes the table in a binary form (magic number, first year,
+ * length, then one double per year) that loads without parsing; load() also
+ * accepts the original BLS text file.
+ */
+public class UnemploymentTable {
+
+    // "UNEM"; BLS text files start with a year or a comment, never with these bytes
+    private static final int MAGIC = 0x554e454d;
+
+    // Table loaded by the last loadFromCache call, reused by later tasks in the same JVM
+    private static String cachedKey;
+    private static UnemploymentTable cachedTable;
+
+    private final double[] rates;
+
+    private UnemploymentTable(double[] rates) {
+        this.rates = rates;
+    }
+
+    /**
+     * Builds a table from a map of year to annual average rate, as returned by
+     * UnemploymentLoader.loadUnemploymentData.
+     */
+    public static UnemploymentTable fromRates(Map<Integer, Double> ratesByYear) {
+        int lastYear = UnemploymentLoader.EARLIEST_YEAR - 1;
+        for (int year : ratesByYear.keySet()) {
+            lastYear = Math.max(lastYear, year);
+        }
+        double[] rates = new double[lastYear - UnemploymentLoader.EARLIEST_YEAR + 1];
+        Arrays.fill(rates, Double.NaN);
+        for (Map.Entry<Integer, Double> entry : ratesByYear.entrySet()) {
+            int index = entry.getKey() - UnemploymentLoader.EARLIEST_YEAR;
+            if (index >= 0) {
+                rates[index] = entry.getValue();
+            }
+        }
+        return new UnemploymentTable(rates);
+    }
+
+    // Annual average rate for the year, or NaN if there is no data for it.
+    public double rate(int year) {
+        int index = year - UnemploymentLoader.EARLIEST_YEAR;
+        return index >= 0 && index < rates.length ? rates[index] : Double.NaN;
+    }
+
+    // One past the last year the table covers; rate() is NaN from here on.
+    public int endYear() {
+        return UnemploymentLoader.EARLIEST_YEAR + rates.length;
+    }
+
+    /**
+     * Writes the table in binary form.
+     *
+     * @param path Path to write to; replaced if it exists
+     * @param conf Hadoop configuration
+     * @throws IOException if file cannot be written
+     */
+    public void write(Path path, Configuration conf) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        try (DataOutputStream out = new DataOutputStream(fs.create(path, true))) {
+            out.writeInt(MAGIC);
+            out.writeInt(UnemploymentLoader.EARLIEST_YEAR);
+            out.writeInt(rates.length);
+            for (double rate : rates) {
+                out.writeDouble(rate);
+            }
+        }
+    }
+
+    /**
+     * Loads a table written with {@link #write}, or parses a BLS text file.
+     *
+     * @param path Path to the table or unemployment data file
+     * @param conf Hadoop configuration
+     * @return The loaded table
+     * @throws IOException if file cannot be read
+     */
+    public static UnemploymentTable load(Path path, Configuration conf) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        try (InputStream in = fs.open(path)) {
+            return load(in);
+        }
+    }
+
+    /**
+     * Loads the table shipped through the distributed cache under the given
+     * symlink name, preferring the localized copy in the task working
+     * directory and falling back to the "unemployment.data.path" configuration
+     * property. The result is kept for later tasks of the same job that run in
+     * this JVM.
+     *
+     * @param linkName Symlink (URI fragment) the table was cached under
+     * @param context  Task context
+     * @return The loaded table
+     * @throws IOException if the file cannot be found or read
+     */
+    public static synchronized UnemploymentTable loadFromCache(String linkName, JobContext context)
+            throws IOException {
+        File localCopy = new File(linkName);
+        if (localCopy.isFile()) {
+            // The symlink resolves into a localized directory unique to this version of the file
+            String key = localCopy.getCanonicalPath();
+            if (!key.equals(cachedKey)) {
+                try (InputStream in = new FileInputStream(localCopy)) {
+                    cachedTable = load(in);
+                }
+                cachedKey = key;
+            }
+            return cachedTable;
+        }
+
+        URI[] cacheFiles = context.getCacheFiles();
+        if (cacheFiles != null) {
+            for (URI cacheFile : cacheFiles) {
+                if (linkName.equals(cacheFile.getFragment())) {
+                    return load(new Path(cacheFile.getScheme(), cacheFile.getAuthority(), cacheFile.getPath()),
+                            context.getConfiguration());
+                }
+            }
+        }
+
+        String unemploymentPathStr = context.getConfiguration().get("unemployment.data.path");
+        if (unemploymentPathStr == null) {
+            throw new IOException("Unemployment data file not found in distributed cache or configuration");
+        }
+        return load(new Path(unemploymentPathStr), context.getConfiguration());
+    }
+
+    private static UnemploymentTable load(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        DataInputStream data = new DataInputStream(buffered);
+        buffered.mark(4);
+        int magic;
+        try {
+            magic = data.readInt();
+        } catch (EOFException e) {
+            // Shorter than the header, so not a binary table
+            magic = 0;
+        }
+        if (magic != MAGIC) {
+            buffered.reset();
+            return fromRates(UnemploymentLoader.parse(buffered));
+        }
+
+        int firstYear = data.readInt();
+        double[] rates = new double[data.readInt()];
+        for (int i = 0; i < rates.length; i++) {
+            rates[i] = data.readDouble();
+        }
+        if (firstYear != UnemploymentLoader.EARLIEST_YEAR) {
+            throw new IOException("Unemployment table starts at " + firstYear + ", expected "
+                    + UnemploymentLoader.EARLIEST_YEAR);
+        }
+        return new UnemploymentTable(rates);
+    }
+}
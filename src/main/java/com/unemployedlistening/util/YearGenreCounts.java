@@ -0,0 +1,95 @@
+package com.unemployedlistening.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import com.unemployedlistening.io.YearGenreKey;
+
+/**
+ * Bounded in-mapper aggregation table of (year, genreId) counts.
+ * Keys are packed into a long and kept in an open-addressed primitive table,
+ * so counting a record allocates nothing. A mapper adds one count per record
+ * and writes the totals out when the table is full and again in cleanup, so
+ * map output is one record per distinct (year, genreId) per flush instead of
+ * one per input record.
+ */
+public class YearGenreCounts {
+
+    // Maximum distinct (year, genreId) entries held before an early flush; 0 disables in-mapper combining
+    public static final String MAX_ENTRIES_KEY = "genre.count.inmapper.max.entries";
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    // No real key has year Integer.MIN_VALUE, so this marks an empty slot
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final int maxEntries;
+    private final long[] keys;
+    private final int[] counts;
+    private int size;
+
+    private final YearGenreKey outputKey = new YearGenreKey();
+    private final IntWritable outputCount = new IntWritable();
+
+    public YearGenreCounts(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        // Power-of-two table at most half full
+        int capacity = Integer.highestOneBit(this.maxEntries * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.counts = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Adds delta to the count of (year, genreId).
+     *
+     * @return true if the table has reached its entry cap and should be flushed
+     */
+    public boolean add(int year, int genreId, int delta) {
+        long key = ((long) year << 32) | (genreId & 0xffffffffL);
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                counts[slot] += delta;
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        counts[slot] = delta;
+        return ++size >= maxEntries;
+    }
+
+    // Number of distinct (year, genreId) entries currently held.
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes every held count to the context and empties the table.
+     */
+    public void flush(TaskInputOutputContext<?, ?, YearGenreKey, IntWritable> context)
+            throws IOException, InterruptedException {
+        if (size == 0) {
+            return;
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            long key = keys[slot];
+            if (key != EMPTY) {
+                outputKey.set((int) (key >> 32), (int) key);
+                outputCount.set(counts[slot]);
+                context.write(outputKey, outputCount);
+                keys[slot] = EMPTY;
+            }
+        }
+        size = 0;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}